@@ -0,0 +1,276 @@
+package app.Controller;
+
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import app.Data.EmotionFrequencies;
+import app.Data.EmotionStatistics;
+import app.Model.Blackboard;
+import app.Model.RawDataProcessor;
+import app.Model.StateSnapshotter;
+import app.Model.TaskGroup;
+import app.Model.ViewDataProcessor;
+import app.View.WarmUp;
+import mqttLib.ThePublisherMQTT;
+import mqttLib.TheSubscriberMQTT;
+
+/**
+ * The {@code HeadlessMain} class runs the processing pipeline without a user
+ * interface, e.g. on a server without a display. It subscribes to the eye
+ * tracking and emotion topics, fuses and analyses the data exactly like the
+ * desktop application and periodically reports the results of the session.
+ * No Swing component is created and AWT runs in headless mode.
+ * <p>
+ * The node is configured with {@code --key=value} arguments, optionally on top
+ * of a properties file given with {@code --config=path}:
+ * <ul>
+ * <li>{@code broker}, {@code eyeTopic}, {@code emotionTopic}: MQTT settings</li>
+ * <li>{@code session}: id of the Blackboard session</li>
+ * <li>{@code shards}, {@code batchSize}: processing settings</li>
+ * <li>{@code memoryBudgetMb}: heap the session's highlights may use, older
+ * collections are spilled to disk beyond it</li>
+ * <li>{@code output}: comma separated list of {@code metrics} (logger),
+ * {@code file}, {@code topic} and {@code view} (highlight deltas and frequency
+ * snapshots for render-only clients, see {@link ViewDeltaPublisher})</li>
+ * <li>{@code outputFile}, {@code outputTopic}: destinations of the reports</li>
+ * <li>{@code viewTopic}: topic of the view deltas</li>
+ * <li>{@code reportIntervalMs}: time between two reports</li>
+ * <li>{@code warmupSamples}: synthetic samples to warm the JIT up with before
+ * going live</li>
+ * <li>{@code snapshotFile}, {@code snapshotIntervalMs}: where and how often the
+ * session state is saved; a saved state is restored at startup, see
+ * {@link StateSnapshotter}</li>
+ * </ul>
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class HeadlessMain {
+
+   private static final Logger LOGGER = LoggerFactory.getLogger(HeadlessMain.class);
+   private static final String CONFIG_OPTION = "config";
+
+   private final Properties settings;
+   private final Blackboard blackboard;
+   private final TaskGroup tasks = new TaskGroup("headless node");
+   private final CountDownLatch stopped = new CountDownLatch(1);
+   private BufferedWriter fileOutput;
+   private ThePublisherMQTT topicOutput;
+   private StateSnapshotter snapshotter;
+
+   /**
+    * Applies the settings to a Blackboard session.
+    *
+    * @param settings the node's configuration
+    */
+   public HeadlessMain(Properties settings) {
+      this.settings = settings;
+      blackboard = Blackboard.getSession(settings.getProperty("session", Blackboard.DEFAULT_SESSION));
+      blackboard.setMqttBroker(settings.getProperty("broker", blackboard.getMqttBroker()));
+      blackboard.setMqttEyeTopic(settings.getProperty("eyeTopic", blackboard.getMqttEyeTopic()));
+      blackboard.setMqttEmotionTopic(settings.getProperty("emotionTopic", blackboard.getMqttEmotionTopic()));
+      blackboard.setMqttViewTopic(settings.getProperty("viewTopic", blackboard.getMqttViewTopic()));
+      blackboard.setProcessingShards(
+            Integer.parseInt(settings.getProperty("shards", String.valueOf(blackboard.getProcessingShards()))));
+      blackboard.setProcessingBatchSize(
+            Integer.parseInt(settings.getProperty("batchSize", String.valueOf(blackboard.getProcessingBatchSize()))));
+      blackboard.setMemoryBudget(Long.parseLong(settings.getProperty("memoryBudgetMb",
+            String.valueOf(blackboard.getMemoryBudget() >> 20))) << 20);
+   }
+
+   /**
+    * Starts the processors and the subscriber, then reports until
+    * {@link #stop()} is called.
+    *
+    * @throws IOException if the output file cannot be opened
+    */
+   public void run() throws IOException {
+      long reportInterval = Long.parseLong(settings.getProperty("reportIntervalMs", "10000"));
+      List<String> outputs = List.of(settings.getProperty("output", "metrics").split(","));
+      if (outputs.contains("file")) {
+         fileOutput = new BufferedWriter(new FileWriter(settings.getProperty("outputFile", "affect-report.txt"), true));
+      }
+      if (outputs.contains("topic")) {
+         topicOutput = new ThePublisherMQTT(blackboard.getMqttBroker(), "headlessReporter-" + blackboard.getSessionId(),
+               message -> message);
+         topicOutput.connect();
+      }
+
+      String snapshotFile = settings.getProperty("snapshotFile");
+      if (snapshotFile != null) {
+         snapshotter = new StateSnapshotter(blackboard, Path.of(snapshotFile), Long.parseLong(
+               settings.getProperty("snapshotIntervalMs", String.valueOf(StateSnapshotter.DEFAULT_INTERVAL_MS))));
+         snapshotter.restore();
+         snapshotter.start();
+      }
+      int warmUpSamples = Integer.parseInt(settings.getProperty("warmupSamples", "0"));
+      if (warmUpSamples > 0) {
+         new WarmUp(warmUpSamples, false).run();
+      }
+      if (outputs.contains("view")) {
+         ViewDeltaPublisher viewPublisher = new ViewDeltaPublisher(blackboard,
+               "viewPublisher-" + blackboard.getSessionId());
+         tasks.fork(viewPublisher, viewPublisher::stopPublisher);
+      }
+      RawDataProcessor rawDataProcessor = new RawDataProcessor(blackboard);
+      tasks.fork(rawDataProcessor, rawDataProcessor::cleanUpThread);
+      ViewDataProcessor viewDataProcessor = new ViewDataProcessor(blackboard);
+      tasks.fork(viewDataProcessor, viewDataProcessor::cleanUpThread);
+      Map<String, String> topicsAndPrefixes = new HashMap<>();
+      topicsAndPrefixes.put(blackboard.getMqttEyeTopic(), Blackboard.EYE_DATA_LABEL);
+      topicsAndPrefixes.put(blackboard.getMqttEmotionTopic(), Blackboard.EMOTION_DATA_LABEL);
+      TheSubscriberMQTT subscriber = new TheSubscriberMQTT(blackboard.getMqttBroker(),
+            "readingHub-" + blackboard.getSessionId(), topicsAndPrefixes, blackboard);
+      tasks.fork(subscriber, subscriber::stopSubscriber);
+      blackboard.startedProcessing();
+      LOGGER.info("Headless node started:\n{}", blackboard.getFormattedConnectionSettings());
+
+      try {
+         while (!stopped.await(reportInterval, TimeUnit.MILLISECONDS)) {
+            report(outputs, formatReport());
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      } finally {
+         shutDown();
+      }
+   }
+
+   /**
+    * Makes {@link #run()} stop the pipeline and return.
+    */
+   public void stop() {
+      stopped.countDown();
+   }
+
+   private String formatReport() {
+      StringBuilder report = new StringBuilder();
+      report.append("session=").append(blackboard.getSessionId());
+      EmotionFrequencies frequencies = blackboard.getFrequencySnapshot();
+      report.append(" total=").append(frequencies.total()).append(" frequencies=");
+      for (int i = 0; i < frequencies.size(); i++) {
+         report.append(i == 0 ? "" : ",").append(frequencies.percentage(i));
+      }
+      for (EmotionStatistics statistics : blackboard.getEmotionStatistics()) {
+         report.append(String.format(Locale.ROOT, " %s=[ewma=%.3f mean30s=%.3f median5m=%.3f p90_5m=%.3f]",
+               statistics.emotion(), statistics.ewma(), statistics.shortMean(),
+               statistics.longMedian(), statistics.longP90()));
+      }
+      report.append(" shed=").append(blackboard.getShedCount(Blackboard.EYE_DATA_LABEL))
+            .append(',').append(blackboard.getShedCount(Blackboard.EMOTION_DATA_LABEL))
+            .append(',').append(blackboard.getShedCount(Blackboard.PROPERTY_NAME_PROCESSED_DATA));
+      report.append(" stages=").append(blackboard.getPipeline().getMetrics());
+      return report.toString();
+   }
+
+   private void report(List<String> outputs, String report) {
+      if (outputs.contains("metrics")) {
+         LOGGER.info(report);
+      }
+      if (fileOutput != null) {
+         try {
+            fileOutput.write(report);
+            fileOutput.newLine();
+            fileOutput.flush();
+         } catch (IOException e) {
+            LOGGER.warn("Unable to write report: " + e.getMessage());
+         }
+      }
+      if (topicOutput != null) {
+         topicOutput.publish(settings.getProperty("outputTopic", "app/AffectReport"), report);
+      }
+   }
+
+   private void shutDown() {
+      blackboard.stoppedProcessing();
+      tasks.close();
+      if (snapshotter != null) {
+         snapshotter.close();
+      }
+      Blackboard.closeSession(blackboard.getSessionId());
+      if (topicOutput != null) {
+         topicOutput.disconnect();
+      }
+      if (fileOutput != null) {
+         try {
+            fileOutput.close();
+         } catch (IOException e) {
+            LOGGER.warn("Unable to close report file: " + e.getMessage());
+         }
+      }
+      LOGGER.info("Headless node stopped");
+   }
+
+   /**
+    * Reads {@code --key=value} arguments on top of the properties file named by
+    * {@code --config}.
+    *
+    * @param args command-line arguments
+    * @return the settings
+    * @throws IOException if the properties file cannot be read
+    */
+   static Properties parseArguments(String[] args) throws IOException {
+      Properties arguments = new Properties();
+      List<String> invalid = new ArrayList<>();
+      for (String arg : args) {
+         int separator = arg.indexOf('=');
+         if (!arg.startsWith("--") || separator < 0) {
+            invalid.add(arg);
+            continue;
+         }
+         arguments.setProperty(arg.substring(2, separator), arg.substring(separator + 1));
+      }
+      if (!invalid.isEmpty()) {
+         throw new IllegalArgumentException("Expected --key=value arguments, got " + invalid);
+      }
+      Properties settings = new Properties();
+      String config = arguments.getProperty(CONFIG_OPTION);
+      if (config != null) {
+         try (Reader reader = new FileReader(config)) {
+            settings.load(reader);
+         }
+      }
+      settings.putAll(arguments);
+      return settings;
+   }
+
+   /**
+    * The entry point of the headless node. Runs until the process is
+    * terminated.
+    *
+    * @param args {@code --key=value} settings, see the class description
+    * @throws IOException if the configuration or the output file cannot be
+    *                     opened
+    */
+   public static void main(String[] args) throws IOException {
+      System.setProperty("java.awt.headless", "true");
+      HeadlessMain node = new HeadlessMain(parseArguments(args));
+      Thread main = Thread.currentThread();
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+         node.stop();
+         try {
+            main.join(TimeUnit.SECONDS.toMillis(5));
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }));
+      node.run();
+   }
+}
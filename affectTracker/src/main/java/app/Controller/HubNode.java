@@ -0,0 +1,275 @@
+package app.Controller;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import app.Model.Blackboard;
+import app.Model.ConsistentHashRing;
+import app.Model.RawDataProcessor;
+import app.Model.ShardedProcessingStage;
+import app.Model.TaskExecutors;
+import app.Model.TaskGroup;
+import app.Model.ViewDataProcessor;
+import mqttLib.ThePublisherMQTT;
+import mqttLib.TheSubscriberMQTT;
+
+/**
+ * The {@code HubNode} is one of several hub processes that share the reader
+ * sessions of a classroom.
+ * <p>
+ * Every hub announces itself on {@value #HUB_TOPIC} once per second and every
+ * reader does the same on {@value #READER_TOPIC}; members that stay silent for
+ * {@value #MEMBER_TIMEOUT_MS} ms are considered gone. All hubs place the live
+ * hubs on the same {@link ConsistentHashRing}, so they agree on which hub owns
+ * which reader without further coordination. A hub processes the readers it
+ * owns in their own {@link Blackboard} sessions, subscribed to the reader's
+ * partitioned topics ({@code <eyeTopic>/<readerId>} and
+ * {@code <emotionTopic>/<readerId>}). When a hub joins or leaves, the ring
+ * changes and the affected sessions move: the old owner closes them and the
+ * new owner opens them on its next heartbeat.
+ * <p>
+ * Settings are given as {@code --key=value} arguments like for
+ * {@link HeadlessMain}: {@code hubId}, {@code broker}, {@code eyeTopic},
+ * {@code emotionTopic} and {@code shards}.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class HubNode implements PropertyChangeListener {
+
+   public static final String HUB_TOPIC = "app/hubs";
+   public static final String READER_TOPIC = "app/readers";
+   public static final long HEARTBEAT_INTERVAL_MS = 1000;
+   public static final long MEMBER_TIMEOUT_MS = 3500;
+   private static final String HUB_LABEL = "HUB";
+   private static final String READER_LABEL = "READER";
+   // announced by a hub that leaves on purpose
+   private static final String LEAVE_MARKER = "-";
+   private static final String PREFIX_DELIMITER = "~";
+   private static final String SESSION_DELIMITER = "/";
+   private static final int REPORT_EVERY_HEARTBEATS = 10;
+
+   private static final Logger LOGGER = LoggerFactory.getLogger(HubNode.class);
+
+   private final String hubId;
+   private final String broker;
+   private final String eyeTopic;
+   private final String emotionTopic;
+   private final ShardedProcessingStage stage;
+   private final Map<String, Long> hubs = new ConcurrentHashMap<>();
+   private final Map<String, Long> readers = new ConcurrentHashMap<>();
+   // the sessions of the owned readers; data is only routed through here, so
+   // a message arriving after a release cannot open the closed session again
+   private final Map<String, Blackboard> ownedSessions = new ConcurrentHashMap<>();
+   private final TaskGroup tasks;
+   private final CountDownLatch stopped = new CountDownLatch(1);
+   private TheSubscriberMQTT subscriber;
+   private ConsistentHashRing ring = new ConsistentHashRing();
+
+   public HubNode(String hubId, String broker, String eyeTopic, String emotionTopic, int shards) {
+      this.hubId = hubId;
+      this.broker = broker;
+      this.eyeTopic = eyeTopic;
+      this.emotionTopic = emotionTopic;
+      this.stage = new ShardedProcessingStage("hub-" + hubId, shards);
+      this.tasks = new TaskGroup("hub " + hubId);
+   }
+
+   /**
+    * Joins the hub group and balances sessions until {@link #stop()} is called.
+    */
+   public void run() {
+      subscriber = new TheSubscriberMQTT(broker, "hub-" + hubId,
+            Map.of(HUB_TOPIC, HUB_LABEL, READER_TOPIC, READER_LABEL), this);
+      tasks.fork(subscriber, subscriber::stopSubscriber);
+      ThePublisherMQTT heartbeat = new ThePublisherMQTT(broker, "hubHeartbeat-" + hubId, message -> message);
+      heartbeat.connect();
+      long startedAt = System.currentTimeMillis();
+      int beats = 0;
+      try {
+         do {
+            heartbeat.publish(HUB_TOPIC, hubId);
+            long now = System.currentTimeMillis();
+            hubs.put(hubId, now);
+            // learn about the other members before claiming readers
+            if (now - startedAt >= MEMBER_TIMEOUT_MS) {
+               rebalance(now);
+            }
+            if (++beats % REPORT_EVERY_HEARTBEATS == 0) {
+               report();
+            }
+         } while (!stopped.await(HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS));
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      } finally {
+         heartbeat.publish(HUB_TOPIC, LEAVE_MARKER + hubId);
+         heartbeat.disconnect();
+         for (String reader : Set.copyOf(ownedSessions.keySet())) {
+            release(reader);
+         }
+         tasks.close();
+         stage.shutdown();
+         LOGGER.info("Hub {} left", hubId);
+      }
+   }
+
+   /**
+    * Makes {@link #run()} hand back its sessions and return.
+    */
+   public void stop() {
+      stopped.countDown();
+   }
+
+   /**
+    * Recomputes the ring from the live hubs and opens or closes sessions so this
+    * hub owns exactly the readers the ring assigns to it.
+    *
+    * @param now current time in ms
+    */
+   private void rebalance(long now) {
+      hubs.entrySet().removeIf(hub -> !hub.getKey().equals(hubId) && now - hub.getValue() > MEMBER_TIMEOUT_MS);
+      readers.entrySet().removeIf(reader -> now - reader.getValue() > MEMBER_TIMEOUT_MS);
+
+      if (!ring.getNodes().equals(hubs.keySet())) {
+         ConsistentHashRing newRing = new ConsistentHashRing();
+         hubs.keySet().forEach(newRing::addNode);
+         ring = newRing;
+         LOGGER.info("Hub {} sees hubs {}", hubId, new TreeSet<>(ring.getNodes()));
+      }
+
+      Set<String> desired = new HashSet<>();
+      for (String reader : readers.keySet()) {
+         if (hubId.equals(ring.nodeFor(reader))) {
+            desired.add(reader);
+         }
+      }
+      for (String reader : Set.copyOf(ownedSessions.keySet())) {
+         if (!desired.contains(reader)) {
+            release(reader);
+         }
+      }
+      for (String reader : desired) {
+         if (!ownedSessions.containsKey(reader)) {
+            acquire(reader);
+         }
+      }
+   }
+
+   private void acquire(String reader) {
+      Blackboard session = Blackboard.getSession(reader);
+      session.setMqttBroker(broker);
+      session.setMqttEyeTopic(eyeTopic + SESSION_DELIMITER + reader);
+      session.setMqttEmotionTopic(emotionTopic + SESSION_DELIMITER + reader);
+      // both processors end when the session is closed
+      TaskExecutors.io().execute(new RawDataProcessor(session, stage));
+      TaskExecutors.io().execute(new ViewDataProcessor(session));
+      ownedSessions.put(reader, session);
+      subscriber.subscribe(session.getMqttEyeTopic(), reader + SESSION_DELIMITER + Blackboard.EYE_DATA_LABEL);
+      subscriber.subscribe(session.getMqttEmotionTopic(),
+            reader + SESSION_DELIMITER + Blackboard.EMOTION_DATA_LABEL);
+      session.startedProcessing();
+      LOGGER.info("Hub {} took over reader {}", hubId, reader);
+   }
+
+   private void release(String reader) {
+      if (ownedSessions.remove(reader) == null) {
+         return;
+      }
+      subscriber.unsubscribe(eyeTopic + SESSION_DELIMITER + reader);
+      subscriber.unsubscribe(emotionTopic + SESSION_DELIMITER + reader);
+      Blackboard.closeSession(reader);
+      LOGGER.info("Hub {} released reader {}", hubId, reader);
+   }
+
+   private void report() {
+      long frames = 0;
+      for (Blackboard session : ownedSessions.values()) {
+         frames += session.getFrequencySnapshot().total();
+      }
+      LOGGER.info("Hub {} owns {} of {} readers, {} emotion frames counted", hubId, ownedSessions.size(),
+            readers.size(), frames);
+   }
+
+   /**
+    * Handles membership announcements and routes reader data to the reader's
+    * session. Runs on the subscriber's callback thread.
+    */
+   @Override
+   public void propertyChange(PropertyChangeEvent evt) {
+      if (!TheSubscriberMQTT.CLIENT_PROPERTY_LABEL.equals(evt.getPropertyName())) {
+         if (TheSubscriberMQTT.REPORT_ERROR_LABEL.equals(evt.getPropertyName())) {
+            LOGGER.warn("Hub {} subscriber error: {}", hubId, evt.getNewValue());
+         }
+         return;
+      }
+      String[] prefixAndData = ((String) evt.getNewValue()).split(PREFIX_DELIMITER, 2);
+      if (prefixAndData.length != 2) {
+         return;
+      }
+      String prefix = prefixAndData[0];
+      String data = prefixAndData[1];
+      long now = System.currentTimeMillis();
+      switch (prefix) {
+         case HUB_LABEL -> {
+            if (data.startsWith(LEAVE_MARKER)) {
+               hubs.remove(data.substring(LEAVE_MARKER.length()));
+            } else {
+               hubs.put(data, now);
+            }
+         }
+         case READER_LABEL -> readers.put(data, now);
+         default -> {
+            int delimiter = prefix.lastIndexOf(SESSION_DELIMITER);
+            String reader = delimiter < 0 ? "" : prefix.substring(0, delimiter);
+            // data of a reader this hub no longer owns is dropped
+            Blackboard session = ownedSessions.get(reader);
+            if (session != null) {
+               session.addSubscriberData(prefix.substring(delimiter + 1) + PREFIX_DELIMITER + data);
+            }
+         }
+      }
+   }
+
+   /**
+    * Starts a hub process. Runs until the process is terminated.
+    *
+    * @param args {@code --key=value} settings, see the class description
+    * @throws IOException if a configuration file cannot be read
+    */
+   public static void main(String[] args) throws IOException {
+      System.setProperty("java.awt.headless", "true");
+      Properties settings = HeadlessMain.parseArguments(args);
+      HubNode hub = new HubNode(
+            settings.getProperty("hubId", UUID.randomUUID().toString().substring(0, 8)),
+            settings.getProperty("broker", "tcp://localhost:1883"),
+            settings.getProperty("eyeTopic", "app/SimulatedEyeData"),
+            settings.getProperty("emotionTopic", "app/SimulatedEmotionData"),
+            Integer.parseInt(settings.getProperty("shards",
+                  String.valueOf(Runtime.getRuntime().availableProcessors()))));
+      Thread main = Thread.currentThread();
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+         hub.stop();
+         try {
+            main.join(TimeUnit.SECONDS.toMillis(5));
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }));
+      hub.run();
+   }
+}
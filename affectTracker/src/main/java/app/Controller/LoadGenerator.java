@@ -0,0 +1,139 @@
+package app.Controller;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import app.Model.MouseDataEncoder;
+import app.Model.TaskExecutors;
+import mqttLib.ThePublisherMQTT;
+
+/**
+ * The {@code LoadGenerator} simulates a classroom of readers for testing
+ * several {@link HubNode}s. Every simulated reader announces itself on
+ * {@value HubNode#READER_TOPIC} and publishes gaze samples that move along the
+ * lines of a page, plus emotion scores, on its partitioned topics.
+ * <p>
+ * Settings are given as {@code --key=value} arguments: {@code readers},
+ * {@code gazeRate} and {@code emotionRate} (samples per second and reader),
+ * {@code durationSeconds} (0 runs until terminated), {@code broker},
+ * {@code eyeTopic} and {@code emotionTopic}.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class LoadGenerator {
+
+   private static final Logger LOGGER = LoggerFactory.getLogger(LoadGenerator.class);
+   private static final int PAGE_WIDTH = 1000;
+   private static final int ROW_HEIGHT = 100;
+   private static final int ROWS = 8;
+
+   private final ThePublisherMQTT eyePublisher;
+   private final ThePublisherMQTT emotionPublisher;
+   private final String eyeTopic;
+   private final String emotionTopic;
+   private final String[] readers;
+   private final int[] positions;
+   private final Random random = new Random();
+
+   public LoadGenerator(String broker, String eyeTopic, String emotionTopic, int readerCount) {
+      this.eyeTopic = eyeTopic;
+      this.emotionTopic = emotionTopic;
+      this.eyePublisher = new ThePublisherMQTT(broker, "loadGeneratorEye", new MouseDataEncoder());
+      this.emotionPublisher = new ThePublisherMQTT(broker, "loadGeneratorEmotion", message -> message);
+      this.readers = new String[readerCount];
+      this.positions = new int[readerCount];
+      for (int i = 0; i < readerCount; i++) {
+         readers[i] = "reader-" + i;
+         positions[i] = random.nextInt(PAGE_WIDTH * ROWS);
+      }
+   }
+
+   /**
+    * Publishes the simulated readers' data until the duration has passed.
+    *
+    * @param gazeRate        gaze samples per second and reader
+    * @param emotionRate     emotion samples per second and reader
+    * @param durationSeconds how long to run, 0 to run until terminated
+    * @throws InterruptedException if interrupted while running
+    */
+   public void run(double gazeRate, double emotionRate, long durationSeconds) throws InterruptedException {
+      eyePublisher.connect();
+      emotionPublisher.connect();
+      ScheduledExecutorService timer = Executors.newScheduledThreadPool(3,
+            TaskExecutors.platformThreads("loadGenerator"));
+      timer.scheduleAtFixedRate(this::announceReaders, 0, HubNode.HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+      timer.scheduleAtFixedRate(this::publishGaze, 0, (long) (1_000_000 / gazeRate), TimeUnit.MICROSECONDS);
+      timer.scheduleAtFixedRate(this::publishEmotions, 0, (long) (1_000_000 / emotionRate), TimeUnit.MICROSECONDS);
+      LOGGER.info("Simulating {} readers at {} gaze and {} emotion samples per second each",
+            readers.length, gazeRate, emotionRate);
+      try {
+         if (durationSeconds > 0) {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+         } else {
+            new CountDownLatch(1).await();
+         }
+      } finally {
+         timer.shutdownNow();
+         eyePublisher.disconnect();
+         emotionPublisher.disconnect();
+      }
+   }
+
+   private void announceReaders() {
+      for (String reader : readers) {
+         emotionPublisher.publish(HubNode.READER_TOPIC, reader);
+      }
+   }
+
+   private void publishGaze() {
+      for (int i = 0; i < readers.length; i++) {
+         // read left to right, line by line, with some jitter
+         positions[i] = (positions[i] + 5 + random.nextInt(10)) % (PAGE_WIDTH * ROWS);
+         int x = positions[i] % PAGE_WIDTH;
+         int y = positions[i] / PAGE_WIDTH * ROW_HEIGHT + random.nextInt(20);
+         eyePublisher.publish(eyeTopic + "/" + readers[i], x + " " + y);
+      }
+   }
+
+   private void publishEmotions() {
+      for (String reader : readers) {
+         StringBuilder scores = new StringBuilder();
+         for (int e = 0; e < 6; e++) {
+            float score = random.nextFloat() < 0.2f ? -1 : random.nextFloat();
+            scores.append(e == 0 ? "" : ", ").append(String.format(Locale.ROOT, "%.4f", score));
+         }
+         emotionPublisher.publish(emotionTopic + "/" + reader, scores.toString());
+      }
+   }
+
+   /**
+    * Starts the load generator.
+    *
+    * @param args {@code --key=value} settings, see the class description
+    * @throws IOException          if a configuration file cannot be read
+    * @throws InterruptedException if interrupted while running
+    */
+   public static void main(String[] args) throws IOException, InterruptedException {
+      Properties settings = HeadlessMain.parseArguments(args);
+      new LoadGenerator(
+            settings.getProperty("broker", "tcp://localhost:1883"),
+            settings.getProperty("eyeTopic", "app/SimulatedEyeData"),
+            settings.getProperty("emotionTopic", "app/SimulatedEmotionData"),
+            Integer.parseInt(settings.getProperty("readers", "40")))
+            .run(Double.parseDouble(settings.getProperty("gazeRate", "30")),
+                  Double.parseDouble(settings.getProperty("emotionRate", "2")),
+                  Long.parseLong(settings.getProperty("durationSeconds", "0")));
+   }
+}
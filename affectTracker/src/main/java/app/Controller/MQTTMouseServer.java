@@ -7,6 +7,7 @@ import org.slf4j.LoggerFactory;
 
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionListener;
+import java.util.concurrent.CountDownLatch;
 
 public class MQTTMouseServer implements MouseMotionListener, Runnable {
 
@@ -16,6 +17,8 @@ public class MQTTMouseServer implements MouseMotionListener, Runnable {
 
    private final String topic;
 
+   private final CountDownLatch stopped = new CountDownLatch(1);
+
    public MQTTMouseServer(String broker, String clientId, String topic, Encoder encoder) {
       this.topic = topic;
       mqttPublisher = new ThePublisherMQTT(broker, clientId, encoder);
@@ -28,9 +31,7 @@ public class MQTTMouseServer implements MouseMotionListener, Runnable {
 
          if (mqttPublisher.isConnected()) {
             // keep thread alive to wait for the mouse to be dragged
-            synchronized (this) {
-               wait();
-            }
+            stopped.await();
          }
       } catch (InterruptedException e) {
          logger.error(" MQTTServer was interrupted", e);
@@ -40,6 +41,13 @@ public class MQTTMouseServer implements MouseMotionListener, Runnable {
       }
    }
 
+   /**
+    * Lets {@link #run()} return and disconnect the publisher.
+    */
+   public void stopServer() {
+      stopped.countDown();
+   }
+
    @Override
    public void mouseDragged(MouseEvent e) {
       String mouseData = String.format("%d %d", e.getX(), e.getY());
@@ -0,0 +1,104 @@
+package app.Controller;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import app.Data.EmotionFrequencies;
+import app.Model.Blackboard;
+import app.Model.ViewDeltaCodec;
+import mqttLib.ThePublisherMQTT;
+
+/**
+ * The {@code ViewDeltaPublisher} publishes the output of a session's
+ * {@link app.Model.ViewDataProcessor}, the highlight deltas and the frequency
+ * snapshots, on the view topic of the {@link Blackboard}. Render-only clients
+ * subscribe to that topic and display the session without processing the raw
+ * data themselves.
+ * <p>
+ * Deltas are collected and sent as one message every {@value #FLUSH_INTERVAL_MS}
+ * ms, so the message rate stays bounded however fast the gaze samples arrive.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class ViewDeltaPublisher implements Runnable, PropertyChangeListener {
+
+   private static final Logger logger = LoggerFactory.getLogger(ViewDeltaPublisher.class);
+   private static final long FLUSH_INTERVAL_MS = 20;
+
+   private final Blackboard blackboard;
+   private final ThePublisherMQTT mqttPublisher;
+   private final String topic;
+   private final StringBuilder pending = new StringBuilder();
+   private final CountDownLatch stopped = new CountDownLatch(1);
+
+   public ViewDeltaPublisher(Blackboard blackboard, String clientId) {
+      this.blackboard = blackboard;
+      this.topic = blackboard.getMqttViewTopic();
+      mqttPublisher = new ThePublisherMQTT(blackboard.getMqttBroker(), clientId, message -> message);
+   }
+
+   @Override
+   public void run() {
+      mqttPublisher.connect();
+      blackboard.addPropertyChangeListener(Blackboard.PROPERTY_NAME_VIEW_DELTA, this);
+      blackboard.addPropertyChangeListener(Blackboard.PROPERTY_NAME_FREQUENCIES, this);
+      try {
+         while (!stopped.await(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            flush();
+         }
+      } catch (InterruptedException e) {
+         logger.error("View delta publisher was interrupted", e);
+         Thread.currentThread().interrupt();
+      } finally {
+         blackboard.removePropertyChangeListener(Blackboard.PROPERTY_NAME_VIEW_DELTA, this);
+         blackboard.removePropertyChangeListener(Blackboard.PROPERTY_NAME_FREQUENCIES, this);
+         flush();
+         mqttPublisher.disconnect();
+      }
+   }
+
+   /**
+    * Lets {@link #run()} send the remaining deltas and return.
+    */
+   public void stopPublisher() {
+      stopped.countDown();
+   }
+
+   @Override
+   public void propertyChange(PropertyChangeEvent evt) {
+      String delta = switch (evt.getPropertyName()) {
+         case Blackboard.PROPERTY_NAME_VIEW_DELTA -> (String) evt.getNewValue();
+         case Blackboard.PROPERTY_NAME_FREQUENCIES ->
+            ViewDeltaCodec.frequencies((EmotionFrequencies) evt.getNewValue());
+         default -> null;
+      };
+      if (delta != null) {
+         synchronized (pending) {
+            if (!pending.isEmpty()) {
+               pending.append(ViewDeltaCodec.DELTA_SEPARATOR);
+            }
+            pending.append(delta);
+         }
+      }
+   }
+
+   private void flush() {
+      String message;
+      synchronized (pending) {
+         if (pending.isEmpty()) {
+            return;
+         }
+         message = pending.toString();
+         pending.setLength(0);
+      }
+      mqttPublisher.publish(topic, message);
+   }
+}
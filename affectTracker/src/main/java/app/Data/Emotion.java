@@ -22,6 +22,14 @@ public enum Emotion {
    RELAXATION(Color.MAGENTA, 4),
    INTEREST(Color.CYAN, 5);
 
+   private static final Emotion[] BY_VALUE = new Emotion[values().length];
+
+   static {
+      for (Emotion e : values()) {
+         BY_VALUE[e.value + 1] = e;
+      }
+   }
+
    private final Color color;
    private final int value;
 
@@ -47,6 +55,16 @@ public enum Emotion {
       return null;
    }
 
+   /**
+    * Looks up the color of an emotion without iterating, e.g. while drawing.
+    *
+    * @param value value of the emotion, -1 for none
+    * @return the emotion's color, {@link #NONE}'s for unknown values
+    */
+   public static Color colorOf(int value) {
+      return value >= -1 && value < BY_VALUE.length - 1 ? BY_VALUE[value + 1].color : NONE.color;
+   }
+
    public static Emotion getByValue(int number) {
       for (Emotion e : Emotion.values()) {
          if (e.getValue() == number) {
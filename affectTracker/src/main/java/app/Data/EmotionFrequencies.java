@@ -0,0 +1,63 @@
+package app.Data;
+
+import java.util.Arrays;
+
+/**
+ * Immutable snapshot of how often each emotion has been the prominent one.
+ * <p>
+ * Snapshots are published atomically by the model whenever a count changes, so
+ * readers on other threads (such as the event dispatch thread) always see a
+ * consistent set of counts and total. Formatting for display is left to the
+ * reader.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public final class EmotionFrequencies {
+
+   public static final EmotionFrequencies EMPTY = new EmotionFrequencies(new long[ProcessedDataObject.MAX_EMOTION_SCORES]);
+
+   private final long[] counts;
+   private final long total;
+
+   /**
+    * @param counts number of times each emotion was prominent, indexed by
+    *               {@link Emotion#getValue()}; the array is copied
+    */
+   public EmotionFrequencies(long[] counts) {
+      this.counts = counts.clone();
+      long sum = 0;
+      for (long count : counts) {
+         sum += count;
+      }
+      this.total = sum;
+   }
+
+   public int size() {
+      return counts.length;
+   }
+
+   public long count(int index) {
+      return counts[index];
+   }
+
+   public long total() {
+      return total;
+   }
+
+   /**
+    * @param index value of the emotion
+    * @return share of the emotion in whole percent, rounded down; 0 before any
+    *         emotion was counted
+    */
+   public int percentage(int index) {
+      return total == 0 ? 0 : (int) ((double) counts[index] / total * 100);
+   }
+
+   @Override
+   public String toString() {
+      return "EmotionFrequencies" + Arrays.toString(counts);
+   }
+}
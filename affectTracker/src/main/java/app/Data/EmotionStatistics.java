@@ -0,0 +1,25 @@
+package app.Data;
+
+/**
+ * The {@code EmotionStatistics} record is a point-in-time view of the streaming
+ * statistics of one emotion's scores. Means and quantiles are NaN while their
+ * window holds no scores.
+ *
+ * @param emotion         the emotion the statistics belong to
+ * @param ewma            exponentially weighted moving average of all scores
+ * @param shortCount      number of scores in the short window
+ * @param shortMean       mean score in the short window
+ * @param longCount       number of scores in the long window
+ * @param longMean        mean score in the long window
+ * @param longMedian      approximate median score in the long window
+ * @param longP90         approximate 90th percentile score in the long window
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public record EmotionStatistics(Emotion emotion, double ewma,
+      long shortCount, double shortMean,
+      long longCount, double longMean, double longMedian, double longP90) {
+}
@@ -0,0 +1,281 @@
+package app.Data;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * Columnar store of highlights: x, y and length are kept in {@code int}
+ * columns and the emotion in a {@code byte} column, in append-only chunks of
+ * {@value #CHUNK_SIZE} highlights. A highlight takes 13 bytes instead of a
+ * heap object with a color reference, and the render and consolidation loops
+ * read consecutive array elements instead of chasing pointers.
+ * <p>
+ * A store has a single writer, which hands the highlights to readers on other
+ * threads, such as the painting thread, as {@link #snapshot() snapshots}. A
+ * snapshot never changes: taking one starts a new epoch, and the first time the
+ * writer grows or recolors a highlight in a chunk of an earlier epoch it copies
+ * that chunk. Chunks the writer does not touch stay shared between the
+ * snapshots, and appending never copies, since a snapshot does not read past
+ * its own size. {@link #commit()}, {@link #clear()} and
+ * {@link #removeFirst(int)} replace the chunk table instead of changing it.
+ * <p>
+ * The store also collects the area whose pixels its changes affect, so the view
+ * repaints only that area, see {@link #takeDamage()}. Committing does not
+ * count: the highlights stay where they are.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public final class HighlightColumns implements HighlightSequence {
+
+   public static final int CHUNK_SIZE = 1024;
+   // heap use of one highlight in a full chunk
+   public static final int BYTES_PER_HIGHLIGHT = 3 * Integer.BYTES + Byte.BYTES;
+   private static final int CHUNK_SHIFT = 10;
+   private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+   private volatile Table table;
+   // chunks created in an earlier epoch may be shared with a snapshot
+   private int epoch;
+   // area changed since the last takeDamage, written by the writer only
+   private Rectangle damage = new Rectangle();
+
+   public HighlightColumns() {
+      this(new Table(new Chunk[0], 0));
+   }
+
+   private HighlightColumns(Table table) {
+      this.table = table;
+   }
+
+   /**
+    * Appends a highlight.
+    *
+    * @param emotion value of the emotion, -1 for none
+    * @return the index of the highlight
+    */
+   public int add(int x, int y, int length, int emotion) {
+      Table current = table;
+      int index = current.size;
+      if ((index >>> CHUNK_SHIFT) == current.chunks.length) {
+         Chunk[] chunks = Arrays.copyOf(current.chunks, current.chunks.length + 1);
+         chunks[chunks.length - 1] = new Chunk(CHUNK_SIZE, epoch);
+         current = new Table(chunks, index);
+         table = current;
+      }
+      Chunk chunk = current.chunks[index >>> CHUNK_SHIFT];
+      int offset = index & CHUNK_MASK;
+      chunk.x[offset] = x;
+      chunk.y[offset] = y;
+      chunk.length[offset] = length;
+      chunk.emotion[offset] = (byte) emotion;
+      current.size = index + 1;
+      damage = HighlightSequence.include(damage, x, y, length);
+      return index;
+   }
+
+   /**
+    * Takes an immutable snapshot of the highlights stored so far, which may be
+    * read from any thread. Called by the writer.
+    *
+    * @return the snapshot
+    */
+   public HighlightSequence snapshot() {
+      Table current = table;
+      epoch++;
+      return new View(current.chunks, current.size);
+   }
+
+   @Override
+   public int size() {
+      return table.size;
+   }
+
+   @Override
+   public int x(int index) {
+      return table.chunks[index >>> CHUNK_SHIFT].x[index & CHUNK_MASK];
+   }
+
+   @Override
+   public int y(int index) {
+      return table.chunks[index >>> CHUNK_SHIFT].y[index & CHUNK_MASK];
+   }
+
+   @Override
+   public int length(int index) {
+      return table.chunks[index >>> CHUNK_SHIFT].length[index & CHUNK_MASK];
+   }
+
+   @Override
+   public int emotion(int index) {
+      return table.chunks[index >>> CHUNK_SHIFT].emotion[index & CHUNK_MASK];
+   }
+
+   /**
+    * Grows a highlight to the right: its length and its center move by the
+    * increment.
+    */
+   public void grow(int index, int increment) {
+      Chunk chunk = writable(index >>> CHUNK_SHIFT);
+      int offset = index & CHUNK_MASK;
+      damage = HighlightSequence.include(damage, chunk.x[offset], chunk.y[offset], chunk.length[offset]);
+      chunk.x[offset] += increment;
+      chunk.length[offset] += increment;
+      damage = HighlightSequence.include(damage, chunk.x[offset], chunk.y[offset], chunk.length[offset]);
+   }
+
+   /**
+    * Colors every highlight with the emotion, unless the first highlight already
+    * has one, i.e. no highlight was added since the last recoloring.
+    *
+    * @return whether the highlights were recolored
+    */
+   public boolean recolor(int emotion) {
+      Table current = table;
+      int count = current.size;
+      if (count == 0 || emotion(0) != Emotion.NONE.getValue()) {
+         return false;
+      }
+      for (int c = 0; c * CHUNK_SIZE < count; c++) {
+         Arrays.fill(writable(c).emotion, 0, Math.min(CHUNK_SIZE, count - c * CHUNK_SIZE), (byte) emotion);
+      }
+      include(bounds());
+      return true;
+   }
+
+   /**
+    * Moves the highlights into a new store and empties this one. Full chunks
+    * are handed over as they are; the last one is cut to size, so a small
+    * collection does not keep a whole chunk.
+    *
+    * @return a store holding the highlights
+    */
+   public HighlightColumns commit() {
+      Table current = table;
+      int count = current.size;
+      Chunk[] chunks = Arrays.copyOf(current.chunks, (count + CHUNK_MASK) >>> CHUNK_SHIFT);
+      int last = count & CHUNK_MASK;
+      if (last != 0) {
+         chunks[chunks.length - 1] = chunks[chunks.length - 1].copy(last, epoch);
+      }
+      table = new Table(new Chunk[0], 0);
+      return new HighlightColumns(new Table(chunks, count));
+   }
+
+   /**
+    * @return the chunk, copied first if a snapshot may share it
+    */
+   private Chunk writable(int index) {
+      Table current = table;
+      Chunk chunk = current.chunks[index];
+      if (chunk.epoch == epoch) {
+         return chunk;
+      }
+      Chunk[] chunks = current.chunks.clone();
+      chunks[index] = chunk.copy(chunk.x.length, epoch);
+      table = new Table(chunks, current.size);
+      return chunks[index];
+   }
+
+   /**
+    * Removes every highlight.
+    */
+   public void clear() {
+      include(bounds());
+      table = new Table(new Chunk[0], 0);
+   }
+
+   /**
+    * Removes the oldest highlights; the others move to the front.
+    *
+    * @param count number of highlights to remove
+    */
+   public void removeFirst(int count) {
+      int total = size();
+      HighlightColumns rest = new HighlightColumns();
+      for (int i = 0; i < Math.min(count, total); i++) {
+         damage = HighlightSequence.include(damage, x(i), y(i), length(i));
+      }
+      for (int i = Math.min(count, total); i < total; i++) {
+         rest.add(x(i), y(i), length(i), emotion(i));
+      }
+      table = rest.table;
+   }
+
+   /**
+    * Hands over the area changed since the last call, in the coordinates of
+    * {@link #bounds()}, and starts collecting anew. Called by the writer.
+    *
+    * @return the changed area, empty if nothing changed
+    */
+   public Rectangle takeDamage() {
+      Rectangle taken = damage;
+      damage = new Rectangle();
+      return taken;
+   }
+
+   private void include(Rectangle area) {
+      if (!area.isEmpty()) {
+         damage = damage.isEmpty() ? area : damage.union(area);
+      }
+   }
+
+   private static final class Table {
+      private final Chunk[] chunks;
+      private volatile int size;
+
+      Table(Chunk[] chunks, int size) {
+         this.chunks = chunks;
+         this.size = size;
+      }
+   }
+
+   private record View(Chunk[] chunks, int size) implements HighlightSequence {
+      @Override
+      public int x(int index) {
+         return chunks[index >>> CHUNK_SHIFT].x[index & CHUNK_MASK];
+      }
+
+      @Override
+      public int y(int index) {
+         return chunks[index >>> CHUNK_SHIFT].y[index & CHUNK_MASK];
+      }
+
+      @Override
+      public int length(int index) {
+         return chunks[index >>> CHUNK_SHIFT].length[index & CHUNK_MASK];
+      }
+
+      @Override
+      public int emotion(int index) {
+         return chunks[index >>> CHUNK_SHIFT].emotion[index & CHUNK_MASK];
+      }
+   }
+
+   private static final class Chunk {
+      private final int[] x;
+      private final int[] y;
+      private final int[] length;
+      private final byte[] emotion;
+      private final int epoch;
+
+      Chunk(int capacity, int epoch) {
+         this(new int[capacity], new int[capacity], new int[capacity], new byte[capacity], epoch);
+      }
+
+      private Chunk(int[] x, int[] y, int[] length, byte[] emotion, int epoch) {
+         this.x = x;
+         this.y = y;
+         this.length = length;
+         this.emotion = emotion;
+         this.epoch = epoch;
+      }
+
+      Chunk copy(int count, int epoch) {
+         return new Chunk(Arrays.copyOf(x, count), Arrays.copyOf(y, count), Arrays.copyOf(length, count),
+               Arrays.copyOf(emotion, count), epoch);
+      }
+   }
+}
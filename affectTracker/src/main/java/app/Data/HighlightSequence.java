@@ -0,0 +1,58 @@
+package app.Data;
+
+import java.awt.Rectangle;
+
+/**
+ * Read-only, index-based access to a sequence of highlights, however they are
+ * stored. A highlight is a bar of the given length centered on x, starting at y,
+ * colored by its emotion.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public interface HighlightSequence {
+
+   int size();
+
+   int x(int index);
+
+   int y(int index);
+
+   int length(int index);
+
+   /**
+    * @return the value of the highlight's emotion, see {@link Emotion#getValue()};
+    *         -1 for {@link Emotion#NONE}
+    */
+   int emotion(int index);
+
+   default boolean isEmpty() {
+      return size() == 0;
+   }
+
+   /**
+    * The area covered by the highlights, in model coordinates: horizontally
+    * the extent of the bars, vertically the rows the bars start on, i.e. one
+    * unit high for a single row. The view adds the height of a bar.
+    *
+    * @return the bounds, empty if there are no highlights
+    */
+   default Rectangle bounds() {
+      Rectangle bounds = new Rectangle();
+      for (int i = 0; i < size(); i++) {
+         bounds = include(bounds, x(i), y(i), length(i));
+      }
+      return bounds;
+   }
+
+   /**
+    * @return the bounds extended by the highlight with the given center, row
+    *         and length
+    */
+   static Rectangle include(Rectangle bounds, int x, int y, int length) {
+      Rectangle bar = new Rectangle(x - length / 2, y, Math.max(1, length), 1);
+      return bounds.isEmpty() ? bar : bounds.union(bar);
+   }
+}
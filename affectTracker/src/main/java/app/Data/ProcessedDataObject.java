@@ -3,26 +3,251 @@ package app.Data;
 import app.Model.RawDataProcessor;
 import app.Model.ViewDataProcessor;
 
+import java.util.AbstractList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 /**
- * The {@code ProcessedDataObject} record represents the processed data for a particular
+ * The {@code ProcessedDataObject} represents the processed data for a particular
  * set of coordinates and emotions. It stores the x and y coordinates, the prominent emotion
- * detected from the data, and the list of emotion scores.
+ * detected from the data, and the emotion scores.
  * <p>
- * This record is used to encapsulate the data produced by the {@link RawDataProcessor} and
+ * This object is used to encapsulate the data produced by the {@link RawDataProcessor} and
  * passed to other components such as the {@link ViewDataProcessor} for further processing and visualization.
- *
- * @param xCoord the x-coordinate of the processed data, representing the x-position on the display
- * @param yCoord the y-coordinate of the processed data, representing the y-position on the display
- * @param prominentEmotion the most prominent emotion determined from the emotion scores
- * @param emotionScores the list of emotion scores associated with the data
+ * <p>
+ * One object is produced for every gaze sample, so instances are recycled through a pool
+ * instead of being allocated each time: the producer takes one with {@link #obtain()} and the
+ * consumer hands it back with {@link #recycle()} once it is done with it. The scores are kept
+ * in a primitive array together with a bitmask of the active emotions; the accessors of the
+ * former record ({@link #xCoord()}, {@link #yCoord()}, {@link #prominentEmotion()} and
+ * {@link #emotionScores()}) are kept for existing consumers.
  *
  * @author Andrew Estrada
  * @author Sean Sponsler
  * @author Xiuyuan Qiu
  * @version 1.0
  */
-public record ProcessedDataObject
-	(int xCoord, int yCoord, Emotion prominentEmotion, List<Float> emotionScores) {
-}
\ No newline at end of file
+public final class ProcessedDataObject {
+
+   public static final int MAX_EMOTION_SCORES = 6;
+   private static final int POOL_CAPACITY = 1024;
+   private static final BlockingQueue<ProcessedDataObject> POOL = new ArrayBlockingQueue<>(POOL_CAPACITY);
+
+   private int xCoord;
+   private int yCoord;
+   private Emotion prominentEmotion;
+   private final float[] scores = new float[MAX_EMOTION_SCORES];
+   private int scoreCount = -1; // -1 when there are no emotion scores
+   private int activeMask;
+   private long timestamp;
+   private boolean pooled;
+
+   private ProcessedDataObject() {
+   }
+
+   /**
+    * Creates an object that is not taken from the pool.
+    *
+    * @param xCoord           the x-coordinate of the processed data, representing the x-position on the display
+    * @param yCoord           the y-coordinate of the processed data, representing the y-position on the display
+    * @param prominentEmotion the most prominent emotion determined from the emotion scores
+    * @param emotionScores    the list of emotion scores associated with the data, or null
+    */
+   public ProcessedDataObject(int xCoord, int yCoord, Emotion prominentEmotion, List<Float> emotionScores) {
+      this.xCoord = xCoord;
+      this.yCoord = yCoord;
+      this.prominentEmotion = prominentEmotion;
+      if (emotionScores != null) {
+         scoreCount = Math.min(emotionScores.size(), MAX_EMOTION_SCORES);
+         for (int i = 0; i < scoreCount; i++) {
+            setScore(i, emotionScores.get(i));
+         }
+      }
+   }
+
+   /**
+    * Takes an object from the pool, or creates one if the pool is empty.
+    *
+    * @return an object whose fields must be set with {@link #set}
+    */
+   public static ProcessedDataObject obtain() {
+      ProcessedDataObject data = POOL.poll();
+      if (data == null) {
+         data = new ProcessedDataObject();
+      }
+      data.pooled = false;
+      return data;
+   }
+
+   /**
+    * Fills this object. The i-th score is read from {@code scores[offset + i * stride]}.
+    *
+    * @param xCoord           the x-coordinate, or -1 without eye tracking data
+    * @param yCoord           the y-coordinate, or -1 without eye tracking data
+    * @param prominentEmotion the most prominent emotion
+    * @param scores           array holding the emotion scores, or null if there are none
+    * @param offset           index of the first score
+    * @param stride           distance between consecutive scores
+    * @param count            number of scores, at most {@link #MAX_EMOTION_SCORES}
+    * @return this object
+    */
+   public ProcessedDataObject set(int xCoord, int yCoord, Emotion prominentEmotion,
+         float[] scores, int offset, int stride, int count) {
+      this.xCoord = xCoord;
+      this.yCoord = yCoord;
+      this.prominentEmotion = prominentEmotion;
+      this.activeMask = 0;
+      if (scores == null) {
+         scoreCount = -1;
+      } else {
+         scoreCount = Math.min(count, MAX_EMOTION_SCORES);
+         for (int i = 0; i < scoreCount; i++) {
+            setScore(i, scores[offset + i * stride]);
+         }
+      }
+      return this;
+   }
+
+   /**
+    * Moves the gaze point, e.g. in a processing stage that smooths the gaze.
+    *
+    * @return this object
+    */
+   public ProcessedDataObject moveTo(int xCoord, int yCoord) {
+      this.xCoord = xCoord;
+      this.yCoord = yCoord;
+      return this;
+   }
+
+   /**
+    * Records when the raw data of this object entered processing.
+    *
+    * @param timestamp a {@link System#nanoTime()} value
+    * @return this object
+    */
+   public ProcessedDataObject stamp(long timestamp) {
+      this.timestamp = timestamp;
+      return this;
+   }
+
+   /**
+    * @return the {@link System#nanoTime()} the raw data entered processing, 0 if
+    *         unknown
+    */
+   public long timestamp() {
+      return timestamp;
+   }
+
+   /**
+    * Copies this object into one taken from the pool, so a further consumer can
+    * recycle it independently.
+    *
+    * @return the copy
+    */
+   public ProcessedDataObject copy() {
+      ProcessedDataObject copy = obtain();
+      copy.xCoord = xCoord;
+      copy.yCoord = yCoord;
+      copy.prominentEmotion = prominentEmotion;
+      copy.scoreCount = scoreCount;
+      copy.activeMask = activeMask;
+      copy.timestamp = timestamp;
+      System.arraycopy(scores, 0, copy.scores, 0, scores.length);
+      return copy;
+   }
+
+   /**
+    * Returns this object to the pool. It must not be used afterwards.
+    */
+   public void recycle() {
+      if (pooled) {
+         return;
+      }
+      pooled = true;
+      prominentEmotion = null;
+      timestamp = 0;
+      POOL.offer(this);
+   }
+
+   private void setScore(int index, float score) {
+      scores[index] = score;
+      if (score != -1) {
+         activeMask |= 1 << index;
+      }
+   }
+
+   public int xCoord() {
+      return xCoord;
+   }
+
+   public int yCoord() {
+      return yCoord;
+   }
+
+   public Emotion prominentEmotion() {
+      return prominentEmotion;
+   }
+
+   public boolean hasEmotionScores() {
+      return scoreCount >= 0;
+   }
+
+   /**
+    * @return number of emotion scores, 0 if there are none
+    */
+   public int emotionScoreCount() {
+      return Math.max(scoreCount, 0);
+   }
+
+   /**
+    * @param index value of the emotion, see {@link Emotion#getValue()}
+    * @return the score of the emotion, -1 if it was inactive
+    */
+   public float emotionScore(int index) {
+      return scores[index];
+   }
+
+   /**
+    * @return bitmask with bit {@code i} set if the emotion with value {@code i} was active
+    */
+   public int activeEmotionMask() {
+      return activeMask;
+   }
+
+   public boolean isEmotionActive(int index) {
+      return (activeMask & (1 << index)) != 0;
+   }
+
+   /**
+    * Read-only view of the scores, kept for consumers of the former record. Prefer
+    * {@link #emotionScore(int)}, which does not box.
+    *
+    * @return the emotion scores, or null if there are none
+    */
+   public List<Float> emotionScores() {
+      if (scoreCount < 0) {
+         return null;
+      }
+      return new AbstractList<>() {
+         @Override
+         public Float get(int index) {
+            if (index >= scoreCount) {
+               throw new IndexOutOfBoundsException(index);
+            }
+            return scores[index];
+         }
+
+         @Override
+         public int size() {
+            return scoreCount;
+         }
+      };
+   }
+
+   @Override
+   public String toString() {
+      return "ProcessedDataObject[xCoord=" + xCoord + ", yCoord=" + yCoord
+            + ", prominentEmotion=" + prominentEmotion + ", emotionScores=" + emotionScores() + "]";
+   }
+}
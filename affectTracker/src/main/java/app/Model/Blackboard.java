@@ -1,17 +1,25 @@
 package app.Model;
 
-import java.awt.Color;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
-import java.util.Deque;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import mqttLib.TheSubscriberMQTT;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import app.Data.Highlight;
+import app.Data.Emotion;
+import app.Data.EmotionFrequencies;
+import app.Data.EmotionStatistics;
+import app.Data.HighlightColumns;
 import app.Data.ProcessedDataObject;
 
 /**
@@ -21,11 +29,13 @@ import app.Data.ProcessedDataObject;
  * a list of circles for the display,
  * and settings for server information and display behavior.
  * <p>
- * This class follows the singleton design pattern, ensuring that only one
- * instance of {@code Blackboard}
- * exists during the application's lifecycle. It provides synchronized access to
- * the data being exchanged
- * between components, and manages the state of data retrieval.
+ * Every reading session has its own {@code Blackboard} with its own delegates,
+ * queues and highlight state, so one process can serve several readers.
+ * Sessions are created on demand with {@link #getSession(String)} and released
+ * with {@link #closeSession(String)}; {@link #getInstance()} returns the
+ * default session used by the desktop application. It provides synchronized
+ * access to the data being exchanged between components, and manages the state
+ * of data retrieval.
  * 
  * <p>
  * Code Metrics:
@@ -48,42 +58,115 @@ public class Blackboard extends PropertyChangeSupport implements PropertyChangeL
    private String MqttBroker = "tcp://broker.hivemq.com:1883"; // default broker
    private String MqttEyeTopic = "app/SimulatedEyeData";
    private String MqttEmotionTopic = "app/SimulatedEmotionData";
+   private String MqttViewTopic = "app/ProcessedViewData";
 
    public static final String PROPERTY_NAME_PROCESSED_DATA = "processed data";
 
-   private boolean started = false;
+   private volatile boolean started = false;
+   private int processingShards = Runtime.getRuntime().availableProcessors();
+   private int processingBatchSize = 1;
    public static final String STARTED = "STARTED";
    public static final String STOPPED = "STOPPED";
+   public static final String CLOSED = "CLOSED";
+   public static final String DEFAULT_SESSION = "default";
 
    public static final String PROPERTY_NAME_VIEW_DATA = "view data";
+   public static final String PROPERTY_NAME_FREQUENCIES = "frequencies";
+   public static final String PROPERTY_NAME_VIEW_DELTA = "view delta";
    private final Logger logger;
    public static final String EYE_DATA_LABEL = "EYE";
    public static final String EMOTION_DATA_LABEL = "EMOTION";
+   public static final String VIEW_DATA_LABEL = "VIEW";
    public static final String MQTTBROKER_ERROR = "MQTTE";
    public static final String MQTT_CONN_SUCCESS = "MQTTC";
    public static final int EYE_TIMEOUT_IN_MS = 500;
    public static final int EMOTION_TIMEOUT_IN_MS = 200;
+   public static final int PROCESSED_TIMEOUT_IN_MS = 500;
+   public static final int EYE_QUEUE_CAPACITY = 1024;
+   public static final int EMOTION_QUEUE_CAPACITY = 64;
+   public static final int PROCESSED_QUEUE_CAPACITY = 1024;
+   public static final int ANALYTICS_QUEUE_CAPACITY = 256;
+   public static final int ANALYTICS_BATCH_SIZE = 32;
+   public static final long DEFAULT_MEMORY_BUDGET_BYTES = 64L << 20;
+   // heap use of one highlight in the columnar store
+   public static final int HIGHLIGHT_BYTES = HighlightColumns.BYTES_PER_HIGHLIGHT;
+   public static final int STALE_DATA_IN_MS = 2000;
+   public static final int EMOTION_LANE = 0;
+   public static final int GAZE_LANE = 1;
    private static final String PREFIX_DELIMITER = "~";
-   private static final Blackboard INSTANCE = new Blackboard();
+   private static final Map<String, Blackboard> SESSIONS = new ConcurrentHashMap<>();
+   private static final Blackboard INSTANCE = getSession(DEFAULT_SESSION);
+
+   private final String sessionId;
 
    private final ProcessedDataDelegate processedDataDelegate;
    private final EyeTrackingDataDelegate eyeTrackingDataDelegate;
    private final EmotionDataDelegate emotionDataDelegate;
    private final HighlightDataDelegate highlightDataDelegate;
+   private final AnalyticsDataDelegate analyticsDataDelegate;
+   private final ProcessingPipeline pipeline;
 
-   private Blackboard() {
+   private Blackboard(String sessionId) {
       super(new Object());
+      this.sessionId = sessionId;
       logger = LoggerFactory.getLogger(Blackboard.class);
       processedDataDelegate = new ProcessedDataDelegate();
       eyeTrackingDataDelegate = new EyeTrackingDataDelegate();
       emotionDataDelegate = new EmotionDataDelegate();
-      highlightDataDelegate = new HighlightDataDelegate();
+      highlightDataDelegate = new HighlightDataDelegate(this);
+      analyticsDataDelegate = new AnalyticsDataDelegate();
+      pipeline = new ProcessingPipeline(sessionId, processedDataDelegate::addToProcessedDataQueue);
+      pipeline.addStage("analytics", ProcessedDataObject::hasEmotionScores, ANALYTICS_QUEUE_CAPACITY,
+            ANALYTICS_BATCH_SIZE, PipelineStage.Binding.IO, batch -> batch.forEach(this::recordEmotionAnalytics));
    }
 
+   /**
+    * @return the Blackboard of the default session
+    */
    public static Blackboard getInstance() {
       return INSTANCE;
    }
 
+   /**
+    * Returns the Blackboard of a reading session, creating it on first use.
+    *
+    * @param sessionId id of the session
+    * @return the session's Blackboard
+    */
+   public static Blackboard getSession(String sessionId) {
+      return SESSIONS.computeIfAbsent(sessionId, Blackboard::new);
+   }
+
+   /**
+    * Stops a session, notifies its listeners with {@link #CLOSED} so processors
+    * bound to it can exit, and forgets it. The default session stays open.
+    *
+    * @param sessionId id of the session
+    */
+   public static void closeSession(String sessionId) {
+      if (DEFAULT_SESSION.equals(sessionId)) {
+         return;
+      }
+      Blackboard session = SESSIONS.remove(sessionId);
+      if (session != null) {
+         session.stoppedProcessing();
+         session.pipeline.close();
+         session.highlightDataDelegate.closeSpill();
+         session.firePropertyChange(CLOSED, false, true);
+      }
+   }
+
+   /**
+    * @return ids of the open sessions
+    */
+   public static Set<String> getSessionIds() {
+      return Set.copyOf(SESSIONS.keySet());
+   }
+
+   public String getSessionId() {
+      return sessionId;
+   }
+
    @Override
    public void propertyChange(PropertyChangeEvent evt) {
       switch (evt.getPropertyName()) {
@@ -112,6 +195,7 @@ public class Blackboard extends PropertyChangeSupport implements PropertyChangeL
             switch (prefixAndData[0]) {
                case EYE_DATA_LABEL -> addToEyeTrackingQueue(prefixAndData[1]);
                case EMOTION_DATA_LABEL -> addToEmotionQueue(prefixAndData[1]);
+               case VIEW_DATA_LABEL -> ViewDeltaCodec.apply(prefixAndData[1], this);
                default -> logger
                      .warn("Data from unknown source with prefix \"" + prefixAndData[0] + "\" : " + prefixAndData[1]);
             }
@@ -156,6 +240,37 @@ public class Blackboard extends PropertyChangeSupport implements PropertyChangeL
       return messageWithPrefix.split(PREFIX_DELIMITER).length == 2;
    }
 
+   /**
+    * Selects how the queue of a stream sheds load when it falls behind.
+    *
+    * @param stream    {@link #EYE_DATA_LABEL}, {@link #EMOTION_DATA_LABEL} or
+    *                  {@link #PROPERTY_NAME_PROCESSED_DATA}
+    * @param policy    the overflow policy
+    * @param parameter N for {@link OverflowPolicy#SAMPLE_EVERY_NTH}, the maximum
+    *                  age in ms for {@link OverflowPolicy#DROP_IF_STALE}
+    */
+   public void setOverflowPolicy(String stream, OverflowPolicy policy, int parameter) {
+      queueDelegate(stream).setOverflowPolicy(policy, parameter);
+   }
+
+   /**
+    * @param stream {@link #EYE_DATA_LABEL}, {@link #EMOTION_DATA_LABEL} or
+    *               {@link #PROPERTY_NAME_PROCESSED_DATA}
+    * @return number of items the queue of the stream has dropped
+    */
+   public long getShedCount(String stream) {
+      return queueDelegate(stream).getShedCount();
+   }
+
+   private QueueDelegate queueDelegate(String stream) {
+      return switch (stream) {
+         case EYE_DATA_LABEL -> eyeTrackingDataDelegate;
+         case EMOTION_DATA_LABEL -> emotionDataDelegate;
+         case PROPERTY_NAME_PROCESSED_DATA -> processedDataDelegate;
+         default -> throw new IllegalArgumentException("Unknown stream: " + stream);
+      };
+   }
+
    public void addToEyeTrackingQueue(String data) throws InterruptedException {
       eyeTrackingDataDelegate.addToEyeTrackingQueue(data);
    }
@@ -164,6 +279,17 @@ public class Blackboard extends PropertyChangeSupport implements PropertyChangeL
       return eyeTrackingDataDelegate.pollEyeTrackingQueue();
    }
 
+   /**
+    * @return the oldest gaze sample, or null without waiting if there is none
+    */
+   public String tryPollEyeTrackingQueue() throws InterruptedException {
+      return eyeTrackingDataDelegate.tryPollEyeTrackingQueue();
+   }
+
+   public int drainEyeTrackingQueue(Collection<String> sink, int maxElements) throws InterruptedException {
+      return eyeTrackingDataDelegate.drainEyeTrackingQueue(sink, maxElements);
+   }
+
    public void addToEmotionQueue(String data) throws InterruptedException {
       emotionDataDelegate.addToEmotionQueue(data);
    }
@@ -172,56 +298,210 @@ public class Blackboard extends PropertyChangeSupport implements PropertyChangeL
       return emotionDataDelegate.pollEmotionQueue();
    }
 
-   public int getProcessedEmotions() throws InterruptedException {
-      return emotionDataDelegate.getProcessedEmotions();
+   /**
+    * @return the oldest emotion sample, or null without waiting if there is none
+    */
+   public String tryPollEmotionQueue() throws InterruptedException {
+      return emotionDataDelegate.tryPollEmotionQueue();
    }
 
-   public void incrementEmotionCount(int index) throws InterruptedException {
-      emotionDataDelegate.incrementEmotionCount(index);
+   public int drainEmotionQueue(Collection<String> sink, int maxElements) throws InterruptedException {
+      return emotionDataDelegate.drainEmotionQueue(sink, maxElements);
+   }
+
+   /**
+    * Counts the emotion as the prominent one and notifies listeners of
+    * {@link #PROPERTY_NAME_FREQUENCIES} with the new snapshot.
+    *
+    * @param index value of the emotion
+    */
+   public void incrementEmotionCount(int index) {
+      EmotionFrequencies frequencies = emotionDataDelegate.incrementEmotionCount(index);
+      firePropertyChange(PROPERTY_NAME_FREQUENCIES, null, frequencies);
    }
 
-   public List<Integer> getEmotionCounts() throws InterruptedException {
-      return emotionDataDelegate.getEmotionCounts();
+   public EmotionFrequencies getFrequencySnapshot() {
+      return emotionDataDelegate.getFrequencySnapshot();
    }
 
-   public List<String> getFrequencies() throws InterruptedException {
-      return emotionDataDelegate.getFrequencies();
+   /**
+    * Replaces the emotion counts, e.g. with the ones received from a processing
+    * node, and notifies listeners of {@link #PROPERTY_NAME_FREQUENCIES}.
+    *
+    * @param frequencies the new counts
+    */
+   public void setFrequencySnapshot(EmotionFrequencies frequencies) {
+      emotionDataDelegate.setFrequencySnapshot(frequencies);
+      firePropertyChange(PROPERTY_NAME_FREQUENCIES, null, frequencies);
    }
 
-   public void setFrequencies(List<String> frequencies) throws InterruptedException {
-      emotionDataDelegate.setFrequencies(frequencies);
+   /**
+    * Notifies listeners of {@link #PROPERTY_NAME_VIEW_DELTA} of a change to the
+    * view state, encoded by {@link ViewDeltaCodec}.
+    *
+    * @param delta the encoded change
+    */
+   public void publishViewDelta(String delta) {
+      firePropertyChange(PROPERTY_NAME_VIEW_DELTA, null, delta);
    }
 
-   public void addToProcessedDataQueue(ProcessedDataObject data) {
-      processedDataDelegate.addToProcessedDataQueue(data);
-      firePropertyChange(PROPERTY_NAME_PROCESSED_DATA, null, data);
+   /**
+    * @return whether anyone listens to view deltas, so they need to be encoded
+    */
+   public boolean isPublishingViewDeltas() {
+      return hasListeners(PROPERTY_NAME_VIEW_DELTA);
    }
 
-   public ProcessedDataObject getFromProcessedDataObjectQueue() {
+   /**
+    * Passes a processed object through the processing stages of the
+    * {@link #getPipeline() pipeline} into the processed data queue.
+    */
+   public void addToProcessedDataQueue(ProcessedDataObject data) throws InterruptedException {
+      pipeline.process(data);
+   }
+
+   /**
+    * Takes the next processed object. Emotion updates without a gaze point are
+    * handed out before any queued gaze point.
+    *
+    * @return the object, or null if none arrived within the timeout
+    */
+   public ProcessedDataObject getFromProcessedDataObjectQueue() throws InterruptedException {
       return processedDataDelegate.getFromProcessedDataQueue();
    }
 
-   public List<Highlight> getHighlightList() {
+   /**
+    * @param lane {@link #EMOTION_LANE} or {@link #GAZE_LANE}
+    * @return how long the objects delivered from the lane waited in it
+    */
+   public SheddingQueue.Latency getLaneLatency(int lane) {
+      return processedDataDelegate.getLaneLatency(lane);
+   }
+
+   /**
+    * @return the stages the processed data passes through before the view
+    *         stage, and those consuming it after; the streaming analytics are
+    *         declared here by default
+    */
+   public ProcessingPipeline getPipeline() {
+      return pipeline;
+   }
+
+   public void recordEmotionAnalytics(ProcessedDataObject data) {
+      analyticsDataDelegate.recordEmotionAnalytics(data);
+   }
+
+   /**
+    * @return streaming statistics of every emotion, see {@link EmotionAnalytics}
+    */
+   public List<EmotionStatistics> getEmotionStatistics() {
+      return analyticsDataDelegate.getEmotionStatistics();
+   }
+
+   /**
+    * @return number of samples recorded by the analytics, changes whenever the
+    *         statistics do
+    */
+   public long getAnalyticsRecordedCount() {
+      return analyticsDataDelegate.getAnalyticsRecordedCount();
+   }
+
+   /**
+    * Writes the state of the streaming analytics, see {@link StateSnapshotter}.
+    */
+   public void writeAnalytics(DataOutput out) throws IOException {
+      analyticsDataDelegate.writeAnalytics(out);
+   }
+
+   /**
+    * Replaces the state of the streaming analytics with a saved one.
+    */
+   public void readAnalytics(DataInput in) throws IOException {
+      analyticsDataDelegate.readAnalytics(in);
+   }
+
+   /**
+    * @return the current highlights, not committed to a collection yet; only
+    *         the view processor changes them
+    */
+   public HighlightColumns getHighlightList() {
       return highlightDataDelegate.getHighlightList();
    }
 
-   public void setHighlightList(List<Highlight> highlightList) {
-      highlightDataDelegate.setHighlightList(highlightList);
-      firePropertyChange(PROPERTY_NAME_VIEW_DATA, null, highlightList);
+   /**
+    * Publishes the current highlights to the view. Called by the writer of the
+    * highlights after changing them.
+    */
+   public void highlightListChanged() {
+      highlightDataDelegate.highlightListChanged();
    }
 
-   public void addHighlightCollection(List<Highlight> highlights) {
+   /**
+    * @return the highlights as last published for drawing; safe to read from
+    *         any thread without locking
+    */
+   public RenderSnapshot getRenderSnapshot() {
+      return highlightDataDelegate.getRenderSnapshot();
+   }
+
+   /**
+    * Moves the current highlights into a new collection, evicting the oldest
+    * collection if there are too many.
+    */
+   public void addHighlightCollection(HighlightColumns highlights) {
       highlightDataDelegate.addHighlightCollection(highlights);
    }
 
-   public void updateHighlightColors(Color color) {
-      highlightDataDelegate.updateHighlightColors(color);
+   /**
+    * Colors the current highlights with the emotion, unless they have been
+    * colored since the last highlight was added.
+    */
+   public void updateHighlightColors(Emotion emotion) {
+      highlightDataDelegate.updateHighlightColors(emotion);
    }
 
-   public Deque<List<Highlight>> getHighlightCollections() {
+   /**
+    * @return the committed collections; read them through
+    *         {@link HighlightRing#snapshot()}
+    */
+   public HighlightRing getHighlightCollections() {
       return highlightDataDelegate.getHighlightCollections();
    }
 
+   /**
+    * Drops every committed collection, including the spilled ones.
+    */
+   public void clearHighlightCollections() {
+      highlightDataDelegate.clearHighlightCollections();
+   }
+
+   /**
+    * @return bytes the session's highlights may occupy on the heap
+    */
+   public long getMemoryBudget() {
+      return highlightDataDelegate.getMemoryBudget();
+   }
+
+   /**
+    * Sets the bytes the session's highlights may occupy on the heap. Half of
+    * the budget is reserved for the current highlights; committed collections
+    * beyond the rest are spilled to disk. The input and processed data queues
+    * are bounded separately by their capacities.
+    *
+    * @param memoryBudget the budget in bytes
+    */
+   public void setMemoryBudget(long memoryBudget) {
+      highlightDataDelegate.setMemoryBudget(memoryBudget);
+   }
+
+   /**
+    * @return how many current highlights may be kept before the oldest are
+    *         dropped
+    */
+   public int getMaxPendingHighlights() {
+      return highlightDataDelegate.getMaxPendingHighlights();
+   }
+
    public int getThresholdLength() {
       return highlightDataDelegate.getThresholdLength();
    }
@@ -279,14 +559,53 @@ public class Blackboard extends PropertyChangeSupport implements PropertyChangeL
       firePropertyChange(MQTT_CONN_SUCCESS, null, message);
    }
 
+   /**
+    * @return whether processing was started and not stopped since
+    */
+   public boolean isStarted() {
+      return started;
+   }
+
    public void startedProcessing() {
       firePropertyChange(STARTED, started, true);
       started = true;
    }
 
+   /**
+    * Notifies listeners that processing stopped and discards the gaze backlog,
+    * so no stale samples are drawn after the stop.
+    */
    public void stoppedProcessing() {
       firePropertyChange(STOPPED, started, false);
       started = false;
+      eyeTrackingDataDelegate.clearEyeTrackingQueue();
+      processedDataDelegate.clearGazeLane();
+   }
+
+   public int getProcessingShards() {
+      return processingShards;
+   }
+
+   /**
+    * @param processingShards number of worker threads of the processing stage a
+    *                         {@link RawDataProcessor} creates for this session;
+    *                         its gaze and emotion streams use one shard each
+    */
+   public void setProcessingShards(int processingShards) {
+      this.processingShards = Math.max(1, processingShards);
+   }
+
+   public int getProcessingBatchSize() {
+      return processingBatchSize;
+   }
+
+   /**
+    * @param processingBatchSize maximum number of samples of each kind drained
+    *                            and processed together; 1 processes every sample
+    *                            on its own
+    */
+   public void setProcessingBatchSize(int processingBatchSize) {
+      this.processingBatchSize = Math.max(1, processingBatchSize);
    }
 
    public String getMqttBroker() {
@@ -312,4 +631,12 @@ public class Blackboard extends PropertyChangeSupport implements PropertyChangeL
    public void setMqttEmotionTopic(String mqttEmotionTopic) {
       MqttEmotionTopic = mqttEmotionTopic;
    }
+
+   public String getMqttViewTopic() {
+      return MqttViewTopic;
+   }
+
+   public void setMqttViewTopic(String mqttViewTopic) {
+      MqttViewTopic = mqttViewTopic;
+   }
 }
@@ -1,19 +1,23 @@
 package app.Model;
 
-import java.awt.Color;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Deque;
+import java.awt.Rectangle;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentLinkedDeque;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
-
-import app.Data.Highlight;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import app.Data.EmotionFrequencies;
+import app.Data.EmotionStatistics;
+import app.Data.Emotion;
+import app.Data.HighlightColumns;
+import app.Data.HighlightSequence;
 import app.Data.ProcessedDataObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Delegate interfaces and implementations for managing different types of data,
@@ -27,6 +31,11 @@ import app.Data.ProcessedDataObject;
  * - Emotion Data (EmotionDelegate)
  * - Highlight Data (HighlightDelegate)
  * - Processed Data (DataDelegate)
+ * - Emotion Analytics (AnalyticsDelegate)
+ * <p>
+ * Committed highlight collections count against the session's memory budget;
+ * the oldest are spilled to disk when it is exceeded, see
+ * {@link HighlightSpill}.
  *
  * Code Metrics:
  * - Number of Classes: 6 (EyeTrackingDataDelegate, EmotionDataDelegate,
@@ -43,40 +52,60 @@ import app.Data.ProcessedDataObject;
  * @author Xiuyuan Qiu
  * @version 1.0
  */
-interface EyeTrackingDelegate {
+interface QueueDelegate {
+   void setOverflowPolicy(OverflowPolicy policy, int parameter);
+
+   long getShedCount();
+}
+
+interface EyeTrackingDelegate extends QueueDelegate {
    void addToEyeTrackingQueue(String data) throws InterruptedException;
 
    String pollEyeTrackingQueue() throws InterruptedException;
+
+   String tryPollEyeTrackingQueue() throws InterruptedException;
+
+   void clearEyeTrackingQueue();
+
+   int drainEyeTrackingQueue(Collection<String> sink, int maxElements) throws InterruptedException;
 }
 
-interface EmotionDelegate {
+interface EmotionDelegate extends QueueDelegate {
    void addToEmotionQueue(String data) throws InterruptedException;
 
    String pollEmotionQueue() throws InterruptedException;
 
-   void setFrequencies(List<String> frequencies) throws InterruptedException;
+   String tryPollEmotionQueue() throws InterruptedException;
 
-   void incrementEmotionCount(int index) throws InterruptedException;
+   int drainEmotionQueue(Collection<String> sink, int maxElements) throws InterruptedException;
 
-   List<Integer> getEmotionCounts() throws InterruptedException;
+   EmotionFrequencies incrementEmotionCount(int index);
 
-   List<String> getFrequencies() throws InterruptedException;
+   EmotionFrequencies getFrequencySnapshot();
 
-   int getProcessedEmotions() throws InterruptedException;
+   void setFrequencySnapshot(EmotionFrequencies snapshot);
 }
 
 interface HighlightDelegate {
-   void addHighlightCollection(List<Highlight> highlights);
+   void addHighlightCollection(HighlightColumns highlights);
 
-   Deque<List<Highlight>> getHighlightCollections();
+   HighlightRing getHighlightCollections();
 
-   void addToHighlightList(Highlight data);
+   void clearHighlightCollections();
 
-   List<Highlight> getHighlightList();
+   long getMemoryBudget();
 
-   void updateHighlightColors(Color color);
+   void setMemoryBudget(long memoryBudget);
 
-   void setHighlightList(List<Highlight> highlightList);
+   int getMaxPendingHighlights();
+
+   HighlightColumns getHighlightList();
+
+   void updateHighlightColors(Emotion emotion);
+
+   void highlightListChanged();
+
+   RenderSnapshot getRenderSnapshot();
 
    int getThresholdLength();
 
@@ -95,125 +124,323 @@ interface HighlightDelegate {
    void setRowSize(int rowSize);
 }
 
-interface DataDelegate {
-   void addToProcessedDataQueue(ProcessedDataObject data);
+interface AnalyticsDelegate {
+   void recordEmotionAnalytics(ProcessedDataObject data);
+
+   List<EmotionStatistics> getEmotionStatistics();
+
+   long getAnalyticsRecordedCount();
+
+   void writeAnalytics(DataOutput out) throws IOException;
 
-   ProcessedDataObject getFromProcessedDataQueue();
+   void readAnalytics(DataInput in) throws IOException;
+}
+
+interface DataDelegate extends QueueDelegate {
+   void addToProcessedDataQueue(ProcessedDataObject data) throws InterruptedException;
+
+   ProcessedDataObject getFromProcessedDataQueue() throws InterruptedException;
+
+   SheddingQueue.Latency getLaneLatency(int lane);
+
+   void clearGazeLane();
 }
 
 class EyeTrackingDataDelegate implements EyeTrackingDelegate {
-   private final BlockingQueue<String> eyeTrackingQueue = new LinkedBlockingQueue<>();
+   private final SheddingQueue<String> eyeTrackingQueue =
+         new SheddingQueue<>(Blackboard.EYE_QUEUE_CAPACITY, OverflowPolicy.DROP_IF_STALE, Blackboard.STALE_DATA_IN_MS);
 
    @Override
    public void addToEyeTrackingQueue(String data) throws InterruptedException {
-      eyeTrackingQueue.put(data);
+      eyeTrackingQueue.offer(data);
    }
 
    @Override
    public String pollEyeTrackingQueue() throws InterruptedException {
       return eyeTrackingQueue.poll(Blackboard.EYE_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
    }
+
+   @Override
+   public String tryPollEyeTrackingQueue() throws InterruptedException {
+      return eyeTrackingQueue.poll(0, TimeUnit.MILLISECONDS);
+   }
+
+   @Override
+   public void clearEyeTrackingQueue() {
+      eyeTrackingQueue.clear();
+   }
+
+   @Override
+   public int drainEyeTrackingQueue(Collection<String> sink, int maxElements) throws InterruptedException {
+      return eyeTrackingQueue.drainTo(sink, maxElements, Blackboard.EYE_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
+   }
+
+   @Override
+   public void setOverflowPolicy(OverflowPolicy policy, int parameter) {
+      eyeTrackingQueue.setPolicy(policy, parameter);
+   }
+
+   @Override
+   public long getShedCount() {
+      return eyeTrackingQueue.getShedCount();
+   }
 }
 
 class EmotionDataDelegate implements EmotionDelegate {
-   private final BlockingQueue<String> emotionQueue = new LinkedBlockingQueue<>();
-   private static List<String> frequencies = Arrays.asList("0%", "0%", "0%", "0%", "0%", "0%");
-   private static int processedEmotions = 0;
-   private final List<Integer> emotionCounts = Arrays.asList(0, 0, 0, 0, 0, 0);
+   private final SheddingQueue<String> emotionQueue =
+         new SheddingQueue<>(Blackboard.EMOTION_QUEUE_CAPACITY, OverflowPolicy.DROP_OLDEST, 0);
+   private final LongAdder[] emotionCounts = new LongAdder[ProcessedDataObject.MAX_EMOTION_SCORES];
+   private final AtomicReference<EmotionFrequencies> frequencies = new AtomicReference<>(EmotionFrequencies.EMPTY);
+
+   EmotionDataDelegate() {
+      for (int i = 0; i < emotionCounts.length; i++) {
+         emotionCounts[i] = new LongAdder();
+      }
+   }
 
    @Override
    public void addToEmotionQueue(String data) throws InterruptedException {
-      emotionQueue.put(data);
+      emotionQueue.offer(data);
    }
 
+   /**
+    * Counts the emotion on its striped counter and publishes a new snapshot. A
+    * snapshot only replaces the current one if it has counted more emotions, so
+    * concurrent updates never move the published counts backwards.
+    */
    @Override
-   public void setFrequencies(List<String> newFrequencies) {
-      frequencies = newFrequencies;
+   public EmotionFrequencies incrementEmotionCount(int index) {
+      emotionCounts[index].increment();
+      long[] counts = new long[emotionCounts.length];
+      for (int i = 0; i < counts.length; i++) {
+         counts[i] = emotionCounts[i].sum();
+      }
+      EmotionFrequencies snapshot = new EmotionFrequencies(counts);
+      EmotionFrequencies current = frequencies.get();
+      while (current.total() < snapshot.total()) {
+         if (frequencies.compareAndSet(current, snapshot)) {
+            return snapshot;
+         }
+         current = frequencies.get();
+      }
+      return current;
    }
 
    @Override
-   public void incrementEmotionCount(int index) {
-      emotionCounts.set(index, emotionCounts.get(index) + 1);
-      processedEmotions++;
+   public EmotionFrequencies getFrequencySnapshot() {
+      return frequencies.get();
    }
 
+   /**
+    * Replaces the counts, e.g. with the ones published by a processing node.
+    * Not meant to race with {@link #incrementEmotionCount(int)}.
+    */
    @Override
-   public List<Integer> getEmotionCounts() {
-      return emotionCounts;
+   public void setFrequencySnapshot(EmotionFrequencies snapshot) {
+      for (int i = 0; i < emotionCounts.length; i++) {
+         emotionCounts[i].reset();
+         emotionCounts[i].add(i < snapshot.size() ? snapshot.count(i) : 0);
+      }
+      frequencies.set(snapshot);
    }
 
    @Override
-   public List<String> getFrequencies() throws InterruptedException {
-      return frequencies;
+   public String pollEmotionQueue() throws InterruptedException {
+      return emotionQueue.poll(Blackboard.EMOTION_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
    }
 
    @Override
-   public int getProcessedEmotions() throws InterruptedException {
-      return processedEmotions;
+   public String tryPollEmotionQueue() throws InterruptedException {
+      return emotionQueue.poll(0, TimeUnit.MILLISECONDS);
    }
 
    @Override
-   public String pollEmotionQueue() throws InterruptedException {
-      return emotionQueue.poll(Blackboard.EMOTION_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
+   public int drainEmotionQueue(Collection<String> sink, int maxElements) throws InterruptedException {
+      return emotionQueue.drainTo(sink, maxElements, Blackboard.EMOTION_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
+   }
+
+   @Override
+   public void setOverflowPolicy(OverflowPolicy policy, int parameter) {
+      emotionQueue.setPolicy(policy, parameter);
+   }
+
+   @Override
+   public long getShedCount() {
+      return emotionQueue.getShedCount();
    }
 }
 
 class HighlightDataDelegate implements HighlightDelegate {
-   private List<Highlight> highlightList = new ArrayList<>();
-   private final Deque<List<Highlight>> highlightCollections = new ConcurrentLinkedDeque<>();
-   private int maxHighlights = 15;
+   private static final Logger LOGGER = LoggerFactory.getLogger(HighlightDataDelegate.class);
+   // the session whose listeners are notified of view changes
+   private final Blackboard owner;
+   private final HighlightColumns highlightList = new HighlightColumns();
+   private final HighlightRing highlightCollections = new HighlightRing(15, this::evicted);
+   private final HighlightSpill spill;
+   // what the view draws; replaced, never changed, under renderLock
+   private final Object renderLock = new Object();
+   private volatile RenderSnapshot renderSnapshot;
+   // area changed since the last published snapshot, under renderLock
+   private Rectangle damage = new Rectangle();
+   private volatile long memoryBudget = Blackboard.DEFAULT_MEMORY_BUDGET_BYTES;
    private int rowSize = 100;
    private int thresholdLength = 50;
    private int highlightLength = 100;
 
+   HighlightDataDelegate(Blackboard owner) {
+      this.owner = owner;
+      this.spill = new HighlightSpill(owner.getSessionId());
+      this.renderSnapshot = new RenderSnapshot(0, List.of(), highlightList.snapshot(), null);
+   }
+
+   @Override
+   public void addHighlightCollection(HighlightColumns highlights) {
+      // the chunks move to the collection, the list starts over empty; a
+      // collection that is not the current list brings new highlights along
+      addDamage(highlights.takeDamage());
+      highlightCollections.add(new SpillableHighlights(highlights.commit()));
+      enforceMemoryBudget();
+      publish(highlights == highlightList ? highlightList.snapshot() : null);
+   }
+
    @Override
-   public void addHighlightCollection(List<Highlight> highlights) {
-      if (highlightCollections.size() == maxHighlights) {
-         highlightCollections.pollFirst();
+   public void clearHighlightCollections() {
+      highlightCollections.clear();
+      publish(null);
+   }
+
+   /**
+    * Spills the oldest resident collections until the resident highlights,
+    * committed and current, fit into the memory budget. A collection that
+    * cannot be spilled is dropped, so the budget holds even if the disk fails.
+    */
+   private void enforceMemoryBudget() {
+      long allowed = memoryBudget / Blackboard.HIGHLIGHT_BYTES - highlightList.size();
+      List<HighlightSequence> collections = highlightCollections.snapshot().collections();
+      long resident = 0;
+      for (HighlightSequence collection : collections) {
+         if (collection instanceof SpillableHighlights spillable && spillable.isResident()) {
+            resident += collection.size();
+         }
+      }
+      for (HighlightSequence collection : collections) {
+         if (resident <= allowed) {
+            return;
+         }
+         if (!(collection instanceof SpillableHighlights spillable) || !spillable.isResident()
+               || collection.isEmpty()) {
+            continue;
+         }
+         try {
+            spillable.spill(spill);
+         } catch (IOException e) {
+            LOGGER.warn("Unable to spill highlights, dropping them: " + e.getMessage());
+            highlightCollections.remove(collection);
+         }
+         resident -= collection.size();
       }
-      List<Highlight> highlightsCopy = new ArrayList<>(highlights);
-      highlightCollections.add(highlightsCopy);
-      highlights.clear();
-      Blackboard.getInstance().firePropertyChange(Blackboard.PROPERTY_NAME_VIEW_DATA, null, highlights);
+   }
+
+   /**
+    * Releases a collection that left the ring; its area needs repainting.
+    */
+   private void evicted(HighlightSequence collection) {
+      addDamage(collection.bounds());
+      release(collection);
+   }
+
+   private static void release(HighlightSequence collection) {
+      if (collection instanceof SpillableHighlights spillable) {
+         spillable.release();
+      }
+   }
+
+   /**
+    * Deletes the spilled collections once the session is closed.
+    */
+   void closeSpill() {
+      clearHighlightCollections();
+      spill.close();
    }
 
    @Override
-   public void updateHighlightColors(Color color) {
+   public long getMemoryBudget() {
+      return memoryBudget;
+   }
+
+   @Override
+   public void setMemoryBudget(long memoryBudget) {
+      this.memoryBudget = memoryBudget;
+   }
+
+   /**
+    * @return how many current highlights may be kept, half of the budget
+    */
+   @Override
+   public int getMaxPendingHighlights() {
+      return (int) Math.min(Integer.MAX_VALUE, memoryBudget / 2 / Blackboard.HIGHLIGHT_BYTES);
+   }
+
+   @Override
+   public void updateHighlightColors(Emotion emotion) {
       if (highlightList.isEmpty()) {
          return;
       }
-      if (highlightList.get(0).getColor() != Color.GRAY) {
-         // No new highlights have been drawn since the last update
-         Blackboard.getInstance().firePropertyChange(Blackboard.PROPERTY_NAME_VIEW_DATA,
-               null, highlightList);
-         return;
-      }
-      for (Highlight highlight : highlightList) {
-         highlight.setColor(color);
-      }
-      Blackboard.getInstance().firePropertyChange(Blackboard.PROPERTY_NAME_VIEW_DATA, null, highlightList);
+      // not recolored if no new highlights have been drawn since the last update
+      highlightList.recolor(emotion.getValue());
+      publish(highlightList.snapshot());
    }
 
    @Override
-   public Deque<List<Highlight>> getHighlightCollections() {
+   public HighlightRing getHighlightCollections() {
       return highlightCollections;
    }
 
    @Override
-   public List<Highlight> getHighlightList() {
+   public HighlightColumns getHighlightList() {
       return highlightList;
    }
 
    @Override
-   public void setHighlightList(List<Highlight> highlightList) {
-      this.highlightList = highlightList;
-      Blackboard.getInstance().firePropertyChange(Blackboard.PROPERTY_NAME_VIEW_DATA, null, highlightList);
+   public void highlightListChanged() {
+      publish(highlightList.snapshot());
+   }
+
+   private void addDamage(Rectangle area) {
+      if (area.isEmpty()) {
+         return;
+      }
+      synchronized (renderLock) {
+         damage = damage.isEmpty() ? area : damage.union(area);
+      }
    }
 
    @Override
-   public void addToHighlightList(Highlight data) {
-      highlightList.add(data);
-      Blackboard.getInstance().firePropertyChange(Blackboard.PROPERTY_NAME_VIEW_DATA, null, null);
+   public RenderSnapshot getRenderSnapshot() {
+      return renderSnapshot;
+   }
+
+   /**
+    * Publishes a render snapshot of the next epoch, with the area changed since
+    * the previous one, and notifies the listeners.
+    *
+    * @param pending snapshot of the current highlights, taken by the writer, or
+    *                null to keep the published one, e.g. when called from
+    *                another thread
+    */
+   private void publish(HighlightSequence pending) {
+      if (pending != null) {
+         addDamage(highlightList.takeDamage());
+      }
+      RenderSnapshot published;
+      synchronized (renderLock) {
+         RenderSnapshot previous = renderSnapshot;
+         published = new RenderSnapshot(previous.epoch() + 1, highlightCollections.snapshot().collections(),
+               pending != null ? pending : previous.pending(), damage);
+         renderSnapshot = published;
+         damage = new Rectangle();
+      }
+      owner.firePropertyChange(Blackboard.PROPERTY_NAME_VIEW_DATA, null, published);
    }
 
    @Override
@@ -228,12 +455,18 @@ class HighlightDataDelegate implements HighlightDelegate {
 
    @Override
    public int getMaxHighlights() {
-      return maxHighlights;
+      return highlightCollections.capacity();
    }
 
+   /**
+    * Resizes the collection ring; the oldest collections that no longer fit
+    * are evicted at once.
+    */
    @Override
    public void setMaxHighlights(int maxHighlights) {
-      this.maxHighlights = maxHighlights;
+      highlightCollections.resize(maxHighlights);
+      // called from the preferences, the current highlights belong to the writer
+      publish(null);
    }
 
    @Override
@@ -259,16 +492,72 @@ class HighlightDataDelegate implements HighlightDelegate {
 }
 
 class ProcessedDataDelegate implements DataDelegate {
-   private final Queue<ProcessedDataObject> processedDataQueue = new ConcurrentLinkedQueue<>();
+   // emotion updates preempt the gaze backlog, gaze points keep their order
+   // whatever they carry; shed objects go back to the pool
+   private final PriorityLanes<ProcessedDataObject> processedDataLanes = new PriorityLanes<>(List.of(
+         new SheddingQueue<>(Blackboard.EMOTION_QUEUE_CAPACITY, OverflowPolicy.DROP_OLDEST, 0,
+               ProcessedDataObject::recycle),
+         new SheddingQueue<>(Blackboard.PROCESSED_QUEUE_CAPACITY, OverflowPolicy.DROP_IF_STALE,
+               Blackboard.STALE_DATA_IN_MS, ProcessedDataObject::recycle)));
+
+   @Override
+   public void addToProcessedDataQueue(ProcessedDataObject data) throws InterruptedException {
+      boolean emotionUpdate = data.xCoord() == -1 && data.yCoord() == -1;
+      processedDataLanes.offer(emotionUpdate ? Blackboard.EMOTION_LANE : Blackboard.GAZE_LANE, data);
+   }
+
+   @Override
+   public ProcessedDataObject getFromProcessedDataQueue() throws InterruptedException {
+      return processedDataLanes.poll(Blackboard.PROCESSED_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
+   }
+
+   @Override
+   public SheddingQueue.Latency getLaneLatency(int lane) {
+      return processedDataLanes.lane(lane).getLatency();
+   }
+
+   @Override
+   public void clearGazeLane() {
+      processedDataLanes.lane(Blackboard.GAZE_LANE).clear();
+   }
+
+   @Override
+   public void setOverflowPolicy(OverflowPolicy policy, int parameter) {
+      // the emotion lane is small and always keeps the latest updates
+      processedDataLanes.lane(Blackboard.GAZE_LANE).setPolicy(policy, parameter);
+   }
+
+   @Override
+   public long getShedCount() {
+      return processedDataLanes.getShedCount();
+   }
+}
+
+class AnalyticsDataDelegate implements AnalyticsDelegate {
+   private final EmotionAnalytics emotionAnalytics = new EmotionAnalytics();
+
+   @Override
+   public void recordEmotionAnalytics(ProcessedDataObject data) {
+      emotionAnalytics.record(data, System.currentTimeMillis());
+   }
+
+   @Override
+   public List<EmotionStatistics> getEmotionStatistics() {
+      return emotionAnalytics.getStatistics(System.currentTimeMillis());
+   }
+
+   @Override
+   public long getAnalyticsRecordedCount() {
+      return emotionAnalytics.getRecordedCount();
+   }
 
    @Override
-   public void addToProcessedDataQueue(ProcessedDataObject data) {
-      processedDataQueue.add(data);
-      Blackboard.getInstance().firePropertyChange(Blackboard.PROPERTY_NAME_PROCESSED_DATA, null, null);
+   public void writeAnalytics(DataOutput out) throws IOException {
+      emotionAnalytics.writeTo(out);
    }
 
    @Override
-   public ProcessedDataObject getFromProcessedDataQueue() {
-      return processedDataQueue.poll();
+   public void readAnalytics(DataInput in) throws IOException {
+      emotionAnalytics.readFrom(in);
    }
 }
@@ -0,0 +1,91 @@
+package app.Model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Consistent hash ring that assigns keys (reader ids) to nodes (hub
+ * processes). Every node is placed on the ring at several points, and a key
+ * belongs to the first node at or after its own hash. When a node joins or
+ * leaves, only the keys between it and its neighbours change owner, so a
+ * rebalance moves roughly {@code 1 / nodes} of the sessions.
+ * <p>
+ * Not thread-safe; build a new ring for every membership change.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class ConsistentHashRing {
+
+   public static final int DEFAULT_VIRTUAL_NODES = 64;
+
+   private final int virtualNodes;
+   private final TreeMap<Integer, String> ring = new TreeMap<>();
+   private final Set<String> nodes = new TreeSet<>();
+
+   public ConsistentHashRing() {
+      this(DEFAULT_VIRTUAL_NODES);
+   }
+
+   /**
+    * @param virtualNodes points per node on the ring; more points spread the
+    *                     keys more evenly
+    */
+   public ConsistentHashRing(int virtualNodes) {
+      this.virtualNodes = Math.max(1, virtualNodes);
+   }
+
+   public void addNode(String node) {
+      if (nodes.add(node)) {
+         for (int i = 0; i < virtualNodes; i++) {
+            ring.put(hash(node + "#" + i), node);
+         }
+      }
+   }
+
+   public void removeNode(String node) {
+      if (nodes.remove(node)) {
+         ring.values().removeIf(node::equals);
+      }
+   }
+
+   /**
+    * @param key reader id or other key
+    * @return the node owning the key, or null if the ring is empty
+    */
+   public String nodeFor(String key) {
+      if (ring.isEmpty()) {
+         return null;
+      }
+      Map.Entry<Integer, String> owner = ring.ceilingEntry(hash(key));
+      // wrap around past the last point
+      return (owner == null ? ring.firstEntry() : owner).getValue();
+   }
+
+   public Set<String> getNodes() {
+      return Set.copyOf(nodes);
+   }
+
+   /**
+    * 32 bit FNV-1a over the UTF-8 bytes, followed by a mixing step so similar
+    * ids land far apart on the ring.
+    */
+   static int hash(String key) {
+      int hash = 0x811C9DC5;
+      for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+         hash ^= b & 0xFF;
+         hash *= 0x01000193;
+      }
+      hash ^= hash >>> 16;
+      hash *= 0x85EBCA6B;
+      hash ^= hash >>> 13;
+      hash *= 0xC2B2AE35;
+      hash ^= hash >>> 16;
+      return hash;
+   }
+}
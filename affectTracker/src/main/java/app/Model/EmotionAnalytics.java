@@ -0,0 +1,133 @@
+package app.Model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import app.Data.Emotion;
+import app.Data.EmotionStatistics;
+import app.Data.ProcessedDataObject;
+
+/**
+ * Streaming statistics over the emotion scores of the processed data.
+ * <p>
+ * For every emotion the analytics keep an exponentially weighted moving
+ * average, and a short (30 s) and a long (5 min) {@link SlidingWindow} with
+ * counts, means and approximate quantiles. Each processed sample updates the
+ * statistics in constant time and the memory used is fixed, so the statistics
+ * can be read at any time without scanning the history.
+ * <p>
+ * Only the scores of active emotions are recorded; inactive emotions (-1) and
+ * samples without emotion scores are skipped. Access is synchronized since the
+ * processing thread records while the UI and exporters read.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class EmotionAnalytics {
+
+   public static final long SHORT_WINDOW_MS = 30_000;
+   public static final long LONG_WINDOW_MS = 5 * 60_000;
+   private static final int SHORT_WINDOW_BUCKETS = 30;
+   private static final int LONG_WINDOW_BUCKETS = 30;
+   private static final int HISTOGRAM_BINS = 50;
+   private static final double EWMA_ALPHA = 0.1;
+
+   private final double[] ewma = new double[ProcessedDataObject.MAX_EMOTION_SCORES];
+   private final boolean[] ewmaStarted = new boolean[ProcessedDataObject.MAX_EMOTION_SCORES];
+   private final SlidingWindow[] shortWindows = new SlidingWindow[ProcessedDataObject.MAX_EMOTION_SCORES];
+   private final SlidingWindow[] longWindows = new SlidingWindow[ProcessedDataObject.MAX_EMOTION_SCORES];
+   private long recorded;
+
+   public EmotionAnalytics() {
+      for (int i = 0; i < ProcessedDataObject.MAX_EMOTION_SCORES; i++) {
+         shortWindows[i] = new SlidingWindow(SHORT_WINDOW_MS, SHORT_WINDOW_BUCKETS, HISTOGRAM_BINS);
+         longWindows[i] = new SlidingWindow(LONG_WINDOW_MS, LONG_WINDOW_BUCKETS, HISTOGRAM_BINS);
+      }
+      for (int i = 0; i < ewma.length; i++) {
+         ewma[i] = Double.NaN;
+      }
+   }
+
+   /**
+    * Records the active emotion scores of a processed sample.
+    *
+    * @param data      the processed sample
+    * @param nowMillis time the sample is recorded at
+    */
+   public synchronized void record(ProcessedDataObject data, long nowMillis) {
+      if (!data.hasEmotionScores()) {
+         return;
+      }
+      recorded++;
+      for (int i = 0; i < data.emotionScoreCount(); i++) {
+         if (!data.isEmotionActive(i)) {
+            continue;
+         }
+         double score = data.emotionScore(i);
+         if (ewmaStarted[i]) {
+            ewma[i] += EWMA_ALPHA * (score - ewma[i]);
+         } else {
+            ewma[i] = score;
+            ewmaStarted[i] = true;
+         }
+         shortWindows[i].add(nowMillis, score);
+         longWindows[i].add(nowMillis, score);
+      }
+   }
+
+   /**
+    * @return number of samples recorded, e.g. to tell whether the statistics
+    *         changed since they were last saved
+    */
+   public synchronized long getRecordedCount() {
+      return recorded;
+   }
+
+   /**
+    * Writes the averages and windows, see {@link #readFrom(DataInput)}.
+    */
+   public synchronized void writeTo(DataOutput out) throws IOException {
+      out.writeLong(recorded);
+      for (int i = 0; i < ProcessedDataObject.MAX_EMOTION_SCORES; i++) {
+         out.writeBoolean(ewmaStarted[i]);
+         out.writeDouble(ewma[i]);
+         shortWindows[i].writeTo(out);
+         longWindows[i].writeTo(out);
+      }
+   }
+
+   /**
+    * Replaces the statistics with ones written by {@link #writeTo(DataOutput)}.
+    */
+   public synchronized void readFrom(DataInput in) throws IOException {
+      recorded = in.readLong();
+      for (int i = 0; i < ProcessedDataObject.MAX_EMOTION_SCORES; i++) {
+         ewmaStarted[i] = in.readBoolean();
+         ewma[i] = in.readDouble();
+         shortWindows[i].readFrom(in);
+         longWindows[i].readFrom(in);
+      }
+   }
+
+   /**
+    * @param nowMillis time the statistics are read at
+    * @return the statistics of every emotion, ordered by {@link Emotion#getValue()}
+    */
+   public synchronized List<EmotionStatistics> getStatistics(long nowMillis) {
+      List<EmotionStatistics> statistics = new ArrayList<>(ProcessedDataObject.MAX_EMOTION_SCORES);
+      for (int i = 0; i < ProcessedDataObject.MAX_EMOTION_SCORES; i++) {
+         SlidingWindow shortWindow = shortWindows[i];
+         SlidingWindow longWindow = longWindows[i];
+         statistics.add(new EmotionStatistics(Emotion.getByValue(i), ewma[i],
+               shortWindow.count(nowMillis), shortWindow.mean(nowMillis),
+               longWindow.count(nowMillis), longWindow.mean(nowMillis),
+               longWindow.quantile(nowMillis, 0.5), longWindow.quantile(nowMillis, 0.9)));
+      }
+      return statistics;
+   }
+}
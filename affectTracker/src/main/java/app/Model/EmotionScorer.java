@@ -0,0 +1,62 @@
+package app.Model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Validates and scores a batch of emotion samples at once.
+ * <p>
+ * The scores of a batch are stored column by column in a single
+ * {@code float[]}: the score of emotion {@code e} for sample {@code i} is at
+ * index {@code e * stride + i}. Keeping each emotion in its own column lets
+ * implementations compare many samples per instruction.
+ * <p>
+ * Validation and the choice of the prominent emotion follow
+ * {@link RawDataProcessor#getProminentEmotion(float[], int)}: a score is valid
+ * if it is between 0 and 1 or exactly -1 (inactive), the first highest score
+ * wins, and a highest score of -1 means no emotion was active.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public interface EmotionScorer {
+
+   int EMOTION_COUNT = 6;
+   int NO_EMOTION = -1;
+
+   /**
+    * Scores the first {@code count} samples of the batch.
+    *
+    * @param scores     column-major scores, {@link #EMOTION_COUNT} columns of
+    *                   {@code stride} entries
+    * @param stride     length of one column
+    * @param count      number of samples to score
+    * @param prominent  receives the index of the prominent emotion per sample,
+    *                   or {@link #NO_EMOTION}
+    * @param valid      receives whether every score of the sample is valid
+    */
+   void score(float[] scores, int stride, int count, int[] prominent, boolean[] valid);
+
+   /**
+    * Returns the vectorized scorer when the {@code jdk.incubator.vector} module
+    * is available (run with {@code --add-modules jdk.incubator.vector}), and the
+    * scalar scorer otherwise.
+    *
+    * @return the fastest scorer usable in this JVM
+    */
+   static EmotionScorer create() {
+      Logger logger = LoggerFactory.getLogger(EmotionScorer.class);
+      if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+         try {
+            EmotionScorer scorer = new VectorEmotionScorer();
+            logger.info("Using vectorized emotion scoring");
+            return scorer;
+         } catch (LinkageError e) {
+            logger.warn("Vector API unavailable, falling back to scalar scoring: {}", e.toString());
+         }
+      }
+      return new ScalarEmotionScorer();
+   }
+}
@@ -0,0 +1,138 @@
+package app.Model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import app.Data.HighlightSequence;
+
+/**
+ * Uniform grid over the positions of the current highlights, used to find the
+ * highlight a new gaze sample consolidates with without scanning the list.
+ * <p>
+ * The cells are as wide and high as the consolidation threshold, so every
+ * highlight within the threshold of a point lies in the point's cell or one of
+ * its eight neighbours. Each cell keeps the list positions of its highlights in
+ * ascending order, so the first match in insertion order is found by looking at
+ * the first qualifying entry of at most nine cells.
+ * <p>
+ * The grid stores positions, not highlights: it must be told when a highlight
+ * moves ({@link #move}) and rebuilt when highlights are removed from the list.
+ * It is not thread-safe.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class HighlightGrid {
+
+   private final Map<Long, Cell> cells = new HashMap<>();
+   private int cellSize = 1;
+
+   /**
+    * Empties the grid and sets the cell size.
+    *
+    * @param threshold the consolidation threshold
+    */
+   public void reset(int threshold) {
+      cells.clear();
+      cellSize = Math.max(1, threshold);
+   }
+
+   /**
+    * Indexes a highlight. Positions must be added in ascending order.
+    *
+    * @param position position of the highlight in the list
+    */
+   public void add(int position, int x, int y) {
+      cells.computeIfAbsent(key(x, y), k -> new Cell()).insert(position);
+   }
+
+   /**
+    * Moves a highlight whose x coordinate changed, e.g. after it grew.
+    */
+   public void move(int position, int oldX, int y, int newX) {
+      long oldKey = key(oldX, y);
+      long newKey = key(newX, y);
+      if (oldKey == newKey) {
+         return;
+      }
+      Cell cell = cells.get(oldKey);
+      if (cell != null && cell.remove(position) && cell.size == 0) {
+         cells.remove(oldKey);
+      }
+      cells.computeIfAbsent(newKey, k -> new Cell()).insert(position);
+   }
+
+   /**
+    * Finds the first highlight, in list order, whose distance to the point is at
+    * most the threshold on both axes.
+    *
+    * @param highlights the indexed list
+    * @param threshold  the threshold the grid was reset with
+    * @return the position of the highlight, or -1 if there is none
+    */
+   public int firstWithin(HighlightSequence highlights, int x, int y, int threshold) {
+      long column = Math.floorDiv((long) x, cellSize);
+      long row = Math.floorDiv((long) y, cellSize);
+      int first = -1;
+      for (long dx = -1; dx <= 1; dx++) {
+         for (long dy = -1; dy <= 1; dy++) {
+            Cell cell = cells.get(key(column + dx, row + dy));
+            if (cell == null) {
+               continue;
+            }
+            for (int i = 0; i < cell.size; i++) {
+               int position = cell.positions[i];
+               if (first >= 0 && position >= first) {
+                  break;
+               }
+               if (Math.abs(highlights.x(position) - x) <= threshold
+                     && Math.abs(highlights.y(position) - y) <= threshold) {
+                  first = position;
+                  break;
+               }
+            }
+         }
+      }
+      return first;
+   }
+
+   private long key(int x, int y) {
+      return key(Math.floorDiv((long) x, cellSize), Math.floorDiv((long) y, cellSize));
+   }
+
+   private static long key(long column, long row) {
+      return (column << 32) ^ (row & 0xffffffffL);
+   }
+
+   /**
+    * Sorted positions of the highlights in one cell.
+    */
+   private static class Cell {
+      private int[] positions = new int[4];
+      private int size;
+
+      void insert(int position) {
+         if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size * 2);
+         }
+         int index = size == 0 || positions[size - 1] < position
+               ? size : -Arrays.binarySearch(positions, 0, size, position) - 1;
+         System.arraycopy(positions, index, positions, index + 1, size - index);
+         positions[index] = position;
+         size++;
+      }
+
+      boolean remove(int position) {
+         int index = Arrays.binarySearch(positions, 0, size, position);
+         if (index < 0) {
+            return false;
+         }
+         System.arraycopy(positions, index + 1, positions, index, size - index - 1);
+         size--;
+         return true;
+      }
+   }
+}
@@ -0,0 +1,63 @@
+package app.Model;
+
+import app.Data.HighlightColumns;
+
+/**
+ * Keeps a {@link HighlightGrid} up to date with the current highlights of a
+ * session, for finding consolidation targets. New highlights are indexed
+ * lazily on the next lookup; the grid is rebuilt when the list was replaced,
+ * shortened or the threshold changed, or after {@link #invalidate()}.
+ * <p>
+ * Used by {@link ViewDataProcessor}; not thread-safe.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+final class HighlightIndex {
+
+   private final HighlightGrid grid = new HighlightGrid();
+   private HighlightColumns indexedList;
+   private int indexedThreshold;
+   private int indexedCount;
+
+   /**
+    * Finds the first highlight, in list order, that is within the threshold
+    * distance of a point on both axes.
+    *
+    * @param highlightList the current highlights
+    * @param x             x coordinate of the point
+    * @param y             y coordinate of the point
+    * @param threshold     the consolidation threshold
+    * @return the position of the highlight, or -1 if there is none
+    */
+   int firstWithin(HighlightColumns highlightList, int x, int y, int threshold) {
+      if (highlightList != indexedList || threshold != indexedThreshold || indexedCount >= highlightList.size()) {
+         grid.reset(threshold);
+         indexedList = highlightList;
+         indexedThreshold = threshold;
+         indexedCount = 0;
+      }
+      for (; indexedCount < highlightList.size(); indexedCount++) {
+         grid.add(indexedCount, highlightList.x(indexedCount), highlightList.y(indexedCount));
+      }
+      return grid.firstWithin(highlightList, x, y, threshold);
+   }
+
+   /**
+    * Updates the index after the x coordinate of a highlight changed, e.g.
+    * because it grew.
+    */
+   void moved(int position, int oldX, int y, int newX) {
+      grid.move(position, oldX, y, newX);
+   }
+
+   /**
+    * Makes the next lookup rebuild the grid, after highlights were removed
+    * from the list.
+    */
+   void invalidate() {
+      indexedList = null;
+   }
+}
@@ -0,0 +1,238 @@
+package app.Model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import app.Data.HighlightSequence;
+
+/**
+ * Fixed-capacity ring of the committed highlight collections of a session,
+ * oldest first. Appending a collection to a full ring evicts the oldest one in
+ * constant time; shrinking the ring evicts the oldest ones at once. Evicted
+ * collections are handed to the eviction callback, e.g. to release their spill
+ * segments.
+ * <p>
+ * Writers are serialized by the ring's lock. Readers, such as the painting
+ * thread, take a {@link #snapshot()} without locking: every write makes the
+ * generation odd while it changes the ring and even again when it is done, and
+ * a reader retries if the generation was odd or changed while it copied the
+ * slots, so a snapshot never mixes two states of the ring.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class HighlightRing {
+
+   private final Consumer<HighlightSequence> evicted;
+   private volatile AtomicReferenceArray<HighlightSequence> slots;
+   private volatile int head;
+   private volatile int count;
+   // twice the number of completed writes, odd while a write is in progress
+   private volatile long generation;
+
+   /**
+    * @param capacity how many collections are kept, at least one
+    * @param evicted  called with every collection that leaves the ring
+    */
+   public HighlightRing(int capacity, Consumer<HighlightSequence> evicted) {
+      this.evicted = evicted;
+      this.slots = new AtomicReferenceArray<>(Math.max(1, capacity));
+   }
+
+   /**
+    * Appends a collection, evicting the oldest one if the ring is full.
+    */
+   public void add(HighlightSequence collection) {
+      HighlightSequence oldest = null;
+      synchronized (this) {
+         beginWrite();
+         AtomicReferenceArray<HighlightSequence> current = slots;
+         int capacity = current.length();
+         if (count == capacity) {
+            oldest = current.get(head);
+            current.set(head, collection);
+            head = (head + 1) % capacity;
+         } else {
+            current.set((head + count) % capacity, collection);
+            count++;
+         }
+         endWrite();
+      }
+      if (oldest != null) {
+         evicted.accept(oldest);
+      }
+   }
+
+   /**
+    * Changes the capacity, keeping the newest collections that fit.
+    *
+    * @param capacity the new capacity, at least one
+    */
+   public void resize(int capacity) {
+      capacity = Math.max(1, capacity);
+      HighlightSequence[] dropped;
+      synchronized (this) {
+         AtomicReferenceArray<HighlightSequence> current = slots;
+         if (capacity == current.length()) {
+            return;
+         }
+         beginWrite();
+         HighlightSequence[] kept = copy(current, head, count);
+         int keep = Math.min(kept.length, capacity);
+         dropped = Arrays.copyOf(kept, kept.length - keep);
+         AtomicReferenceArray<HighlightSequence> resized = new AtomicReferenceArray<>(capacity);
+         for (int i = 0; i < keep; i++) {
+            resized.set(i, kept[kept.length - keep + i]);
+         }
+         slots = resized;
+         head = 0;
+         count = keep;
+         endWrite();
+      }
+      for (HighlightSequence collection : dropped) {
+         evicted.accept(collection);
+      }
+   }
+
+   /**
+    * Removes a collection, e.g. one that could not be spilled. Linear in the
+    * capacity.
+    *
+    * @return whether the collection was in the ring
+    */
+   public boolean remove(HighlightSequence collection) {
+      synchronized (this) {
+         AtomicReferenceArray<HighlightSequence> current = slots;
+         int capacity = current.length();
+         int index = 0;
+         while (index < count && current.get((head + index) % capacity) != collection) {
+            index++;
+         }
+         if (index == count) {
+            return false;
+         }
+         beginWrite();
+         for (int i = index; i < count - 1; i++) {
+            current.set((head + i) % capacity, current.get((head + i + 1) % capacity));
+         }
+         current.set((head + count - 1) % capacity, null);
+         count--;
+         endWrite();
+      }
+      evicted.accept(collection);
+      return true;
+   }
+
+   /**
+    * Evicts every collection.
+    */
+   public void clear() {
+      HighlightSequence[] dropped;
+      synchronized (this) {
+         AtomicReferenceArray<HighlightSequence> current = slots;
+         beginWrite();
+         dropped = copy(current, head, count);
+         for (int i = 0; i < current.length(); i++) {
+            current.set(i, null);
+         }
+         head = 0;
+         count = 0;
+         endWrite();
+      }
+      for (HighlightSequence collection : dropped) {
+         evicted.accept(collection);
+      }
+   }
+
+   /**
+    * @return the collections, oldest first, and the generation they belong to
+    */
+   public Snapshot snapshot() {
+      while (true) {
+         long before = generation;
+         if ((before & 1) == 0) {
+            HighlightSequence[] collections = copy(slots, head, count);
+            if (generation == before) {
+               return new Snapshot(before >>> 1, List.of(collections));
+            }
+         }
+         Thread.onSpinWait();
+      }
+   }
+
+   /**
+    * @return the number of writes so far; it changes whenever the collections do
+    */
+   public long generation() {
+      return generation >>> 1;
+   }
+
+   public int capacity() {
+      return slots.length();
+   }
+
+   public int size() {
+      return count;
+   }
+
+   private void beginWrite() {
+      generation++;
+   }
+
+   private void endWrite() {
+      generation++;
+   }
+
+   private static HighlightSequence[] copy(AtomicReferenceArray<HighlightSequence> slots, int head, int count) {
+      int capacity = slots.length();
+      // fields read before a concurrent write may not fit together;
+      // the generation check discards such a copy
+      count = Math.min(count, capacity);
+      HighlightSequence[] collections = new HighlightSequence[count];
+      for (int i = 0; i < count; i++) {
+         HighlightSequence collection = slots.get((head + i) % capacity);
+         collections[i] = collection != null ? collection : EMPTY;
+      }
+      return collections;
+   }
+
+   private static final HighlightSequence EMPTY = new HighlightSequence() {
+      @Override
+      public int size() {
+         return 0;
+      }
+
+      @Override
+      public int x(int index) {
+         throw new IndexOutOfBoundsException(index);
+      }
+
+      @Override
+      public int y(int index) {
+         throw new IndexOutOfBoundsException(index);
+      }
+
+      @Override
+      public int length(int index) {
+         throw new IndexOutOfBoundsException(index);
+      }
+
+      @Override
+      public int emotion(int index) {
+         throw new IndexOutOfBoundsException(index);
+      }
+   };
+
+   /**
+    * The collections of the ring at one generation.
+    *
+    * @param generation  the generation, see {@link HighlightRing#generation()}
+    * @param collections the collections, oldest first
+    */
+   public record Snapshot(long generation, List<HighlightSequence> collections) {
+   }
+}
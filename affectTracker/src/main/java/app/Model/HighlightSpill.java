@@ -0,0 +1,253 @@
+package app.Model;
+
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import app.Data.HighlightSequence;
+
+/**
+ * Append-only segment files that cold highlight collections of a session are
+ * spilled to when the session exceeds its memory budget.
+ * <p>
+ * Every spilled collection is appended to the current segment as fixed-size
+ * records and mapped back read-only, so it is paged in by the operating system
+ * only when it is drawn and takes no heap space. A segment is rolled over once
+ * it reaches {@link #SEGMENT_BYTES} and deleted once all of its collections
+ * are released and no longer reachable, since a mapped file cannot be deleted
+ * on every platform while a reader, such as a render snapshot, still maps it.
+ * Deletions that fail anyway are logged and retried with the next roll-over
+ * and on close.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+class HighlightSpill implements AutoCloseable {
+
+   static final int RECORD_BYTES = 3 * Integer.BYTES + Byte.BYTES;
+   private static final long SEGMENT_BYTES = 64L << 20;
+   private static final Logger LOGGER = LoggerFactory.getLogger(HighlightSpill.class);
+   // notices when the records of a collection become unreachable
+   private static final Cleaner CLEANER = Cleaner.create();
+
+   private final String name;
+   private final List<Segment> segments = new ArrayList<>();
+   // closed segments whose file could not be deleted yet
+   private final List<Segment> undeleted = new ArrayList<>();
+   private Path directory;
+   private Segment current;
+   private int segmentCount;
+
+   /**
+    * @param name used in the name of the spill directory, e.g. the session id
+    */
+   HighlightSpill(String name) {
+      this.name = name;
+   }
+
+   /**
+    * Appends the highlights to the current segment.
+    *
+    * @param highlights the highlights to spill
+    * @return the mapped records
+    * @throws IOException if the segment cannot be written
+    */
+   synchronized Spilled spill(HighlightSequence highlights) throws IOException {
+      int bytes = highlights.size() * RECORD_BYTES;
+      if (current == null || current.size + bytes > SEGMENT_BYTES) {
+         roll();
+      }
+      ByteBuffer records = ByteBuffer.allocate(bytes);
+      for (int i = 0; i < highlights.size(); i++) {
+         records.putInt(highlights.x(i)).putInt(highlights.y(i)).putInt(highlights.length(i))
+               .put((byte) highlights.emotion(i));
+      }
+      records.flip();
+      long offset = current.size;
+      while (records.hasRemaining()) {
+         current.size += current.channel.write(records, current.size);
+      }
+      current.live++;
+      current.mapped++;
+      Spilled spilled = new Spilled(this, current,
+            current.channel.map(FileChannel.MapMode.READ_ONLY, offset, bytes));
+      CLEANER.register(spilled, new Unmapped(this, current));
+      return spilled;
+   }
+
+   /**
+    * Deletes every segment. Segments that are still mapped, or whose file
+    * cannot be deleted yet, are deleted when the JVM exits instead.
+    */
+   @Override
+   public synchronized void close() {
+      current = null;
+      if (directory != null) {
+         directory.toFile().deleteOnExit(); // runs after the segments registered below
+      }
+      for (Segment segment : List.copyOf(segments)) {
+         delete(segment);
+      }
+      for (Segment segment : List.copyOf(undeleted)) {
+         if (!retryDelete(segment)) {
+            segment.file.toFile().deleteOnExit();
+         }
+      }
+      if (directory != null) {
+         try {
+            Files.deleteIfExists(directory);
+         } catch (IOException e) {
+            LOGGER.warn("Unable to delete spill directory " + directory + " yet, deleting it on exit: "
+                  + e.getMessage());
+         }
+      }
+   }
+
+   private synchronized void release(Segment segment) {
+      segment.live--;
+      deleteIfUnused(segment);
+   }
+
+   private synchronized void unmapped(Segment segment) {
+      segment.mapped--;
+      deleteIfUnused(segment);
+   }
+
+   private void deleteIfUnused(Segment segment) {
+      if (segment.live == 0 && segment.mapped == 0 && segment != current && segments.contains(segment)) {
+         delete(segment);
+      }
+   }
+
+   private void roll() throws IOException {
+      if (directory == null) {
+         directory = Files.createTempDirectory("affect-spill-" + name.replaceAll("[^A-Za-z0-9_-]", "_") + "-");
+      }
+      Segment previous = current;
+      Path file = directory.resolve("segment-" + segmentCount++ + ".bin");
+      current = new Segment(file, FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ, StandardOpenOption.WRITE));
+      segments.add(current);
+      if (previous != null) {
+         deleteIfUnused(previous);
+      }
+      undeleted.removeIf(this::retryDelete);
+   }
+
+   private void delete(Segment segment) {
+      segments.remove(segment);
+      try {
+         segment.channel.close();
+      } catch (IOException e) {
+         LOGGER.warn("Unable to close spill segment " + segment.file + ": " + e.getMessage());
+      }
+      if (!retryDelete(segment)) {
+         undeleted.add(segment);
+      }
+   }
+
+   /**
+    * @return whether the segment file is gone
+    */
+   private boolean retryDelete(Segment segment) {
+      try {
+         Files.deleteIfExists(segment.file);
+         return true;
+      } catch (IOException e) {
+         LOGGER.warn("Unable to delete spill segment " + segment.file + ", retrying later: " + e.getMessage());
+         return false;
+      }
+   }
+
+   private static class Segment {
+      private final Path file;
+      private final FileChannel channel;
+      private long size;
+      // collections not released yet
+      private int live;
+      // collections whose records are still reachable
+      private int mapped;
+
+      Segment(Path file, FileChannel channel) {
+         this.file = file;
+         this.channel = channel;
+      }
+   }
+
+   /**
+    * Cleaning action of a {@link Spilled}; must not refer to it.
+    */
+   private record Unmapped(HighlightSpill spill, Segment segment) implements Runnable {
+      @Override
+      public void run() {
+         spill.unmapped(segment);
+      }
+   }
+
+   /**
+    * The records of one spilled collection.
+    */
+   static final class Spilled implements HighlightSequence {
+      private final HighlightSpill spill;
+      private final Segment segment;
+      private final ByteBuffer records;
+      private boolean released;
+
+      private Spilled(HighlightSpill spill, Segment segment, ByteBuffer records) {
+         this.spill = spill;
+         this.segment = segment;
+         this.records = records;
+      }
+
+      // absolute reads only, so any thread may read the records
+
+      @Override
+      public int size() {
+         return records.capacity() / RECORD_BYTES;
+      }
+
+      @Override
+      public int x(int index) {
+         return records.getInt(index * RECORD_BYTES);
+      }
+
+      @Override
+      public int y(int index) {
+         return records.getInt(index * RECORD_BYTES + 4);
+      }
+
+      @Override
+      public int length(int index) {
+         return records.getInt(index * RECORD_BYTES + 8);
+      }
+
+      @Override
+      public int emotion(int index) {
+         return records.get(index * RECORD_BYTES + 12);
+      }
+
+      /**
+       * Gives up the records, so their segment can be deleted once they are no
+       * longer reachable.
+       */
+      void release() {
+         synchronized (spill) {
+            if (!released) {
+               released = true;
+               spill.release(segment);
+            }
+         }
+      }
+   }
+}
@@ -0,0 +1,108 @@
+package app.Model;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the processing latency of the first minute of data of a session and
+ * logs its percentiles once, so the effect of a JIT warm-up on the first,
+ * otherwise laggy seconds can be compared between runs. The percentiles are
+ * also kept as a {@link Report} for tools that compare runs themselves.
+ * <p>
+ * Only one thread may record; any thread may read the report.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class LatencyRecorder {
+
+   private static final Logger LOGGER = LoggerFactory.getLogger(LatencyRecorder.class);
+   private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+   private static final int MAX_SAMPLES = 1 << 16;
+
+   private final String name;
+   private final long window;
+   private final long[] latencies = new long[MAX_SAMPLES];
+   private int count;
+   private long windowStart;
+   private volatile Report report;
+
+   public LatencyRecorder(String name) {
+      this(name, WINDOW_NANOS);
+   }
+
+   /**
+    * @param window how long to record for, in nanoseconds
+    */
+   public LatencyRecorder(String name, long window) {
+      this.name = name;
+      this.window = window;
+   }
+
+   /**
+    * Records one latency; the first call after the window has passed logs the
+    * report.
+    *
+    * @param startNanos {@link System#nanoTime()} when the item entered processing
+    * @param endNanos   {@link System#nanoTime()} when it was done
+    */
+   public void record(long startNanos, long endNanos) {
+      if (report != null || startNanos == 0) {
+         return;
+      }
+      if (count == 0 && windowStart == 0) {
+         windowStart = endNanos;
+      }
+      if (endNanos - windowStart >= window) {
+         report();
+         return;
+      }
+      if (count < MAX_SAMPLES) {
+         latencies[count++] = endNanos - startNanos;
+      }
+   }
+
+   /**
+    * @return the percentiles of the window, or null while it has not passed
+    */
+   public Report getReport() {
+      return report;
+   }
+
+   private void report() {
+      long[] sorted = Arrays.copyOf(latencies, count);
+      Arrays.sort(sorted);
+      report = new Report(count, percentile(sorted, 0.5) / 1e6, percentile(sorted, 0.99) / 1e6,
+            (count == 0 ? 0 : sorted[count - 1]) / 1e6);
+      LOGGER.info("{} latency over the first {} s: {}", name, TimeUnit.NANOSECONDS.toSeconds(window), report);
+   }
+
+   private static long percentile(long[] sorted, double q) {
+      if (sorted.length == 0) {
+         return 0;
+      }
+      return sorted[(int) Math.min(sorted.length - 1, Math.ceil(q * sorted.length) - 1)];
+   }
+
+   /**
+    * Latency percentiles of a recording window.
+    *
+    * @param samples    number of latencies recorded
+    * @param p50Millis  median latency
+    * @param p99Millis  99th percentile latency
+    * @param maxMillis  highest latency
+    */
+   public record Report(int samples, double p50Millis, double p99Millis, double maxMillis) {
+
+      @Override
+      public String toString() {
+         return String.format("%d samples, p50 %.2f ms, p99 %.2f ms, max %.2f ms", samples, p50Millis, p99Millis,
+               maxMillis);
+      }
+   }
+}
@@ -0,0 +1,35 @@
+package app.Model;
+
+/**
+ * Load-shedding policies of a {@link SheddingQueue}. They decide which items are
+ * dropped when producers outpace the consumer, so the application keeps
+ * showing recent data instead of working through an ever growing backlog.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public enum OverflowPolicy {
+
+   /** When full, the oldest queued item is dropped to make room. */
+   DROP_OLDEST,
+
+   /** When full, the incoming item is dropped. */
+   DROP_NEWEST,
+
+   /** When full, the whole backlog is dropped and only the incoming item is kept. */
+   COALESCE_TO_LATEST,
+
+   /**
+    * When full, only every Nth incoming item is kept (replacing the oldest); the
+    * parameter of the queue is N.
+    */
+   SAMPLE_EVERY_NTH,
+
+   /**
+    * Items older than the parameter of the queue (in milliseconds) are dropped
+    * when they are dequeued. When full, the oldest item is dropped.
+    */
+   DROP_IF_STALE
+}
@@ -0,0 +1,259 @@
+package app.Model;
+
+/**
+ * Single-pass scanners for the raw gaze and emotion payloads.
+ * <p>
+ * Both parsers read the text formats produced by the publishers directly into
+ * primitive values: no intermediate {@code String}s, regular expressions or
+ * boxed numbers are created, so parsing a sample does not allocate.
+ * <p>
+ * Gaze payloads look like {@code {'gaze_point_on_display_area': (335, 247)}}.
+ * As before, the text between the first and the second {@code ':'} holds the
+ * comma separated coordinates, and the characters {@code {}()'} are ignored.
+ * <p>
+ * Emotion payloads are comma separated decimal numbers such as
+ * {@code 0.788972, -1.0, 1.0E-4}, optionally surrounded by whitespace.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public final class PayloadParser {
+
+   /** Returned by {@link #parseGaze(CharSequence)} when the payload is malformed. */
+   public static final long INVALID_GAZE = Long.MIN_VALUE;
+   /** Returned by {@link #parseEmotions} when the payload is malformed. */
+   public static final int INVALID_EMOTIONS = -1;
+
+   private static final double[] POWERS_OF_TEN = {
+         1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+         1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+   };
+   private static final int MAX_MANTISSA_DIGITS = 18;
+
+   private PayloadParser() {
+   }
+
+   /**
+    * Parses the two coordinates of a gaze payload.
+    *
+    * @param data raw gaze payload
+    * @return both coordinates packed into a long (see {@link #gazeX(long)} and
+    *         {@link #gazeY(long)}), or {@link #INVALID_GAZE} if the payload does
+    *         not contain exactly two integers
+    */
+   public static long parseGaze(CharSequence data) {
+      int length = data.length();
+      int start = indexOf(data, ':', 0);
+      if (start < 0) {
+         return INVALID_GAZE;
+      }
+      int end = indexOf(data, ':', start + 1);
+      if (end < 0) {
+         end = length;
+      }
+
+      int x = 0;
+      int count = 0;
+      int i = start + 1;
+      while (i <= end) {
+         // one comma separated token: [ws] [sign] digits [ws], ignoring {}()'
+         long value = 0;
+         boolean negative = false;
+         boolean seenDigit = false;
+         boolean seenSign = false;
+         boolean trailing = false;
+         for (; i < end; i++) {
+            char c = data.charAt(i);
+            if (c == ',') {
+               break;
+            }
+            if (isIgnored(c)) {
+               continue;
+            }
+            if (Character.isWhitespace(c)) {
+               trailing = seenDigit || seenSign;
+               continue;
+            }
+            if (trailing) {
+               return INVALID_GAZE;
+            }
+            if ((c == '-' || c == '+') && !seenDigit && !seenSign) {
+               negative = c == '-';
+               seenSign = true;
+            } else if (c >= '0' && c <= '9') {
+               value = value * 10 + (c - '0');
+               if (value > (long) Integer.MAX_VALUE + 1) {
+                  return INVALID_GAZE;
+               }
+               seenDigit = true;
+            } else {
+               return INVALID_GAZE;
+            }
+         }
+         if (!seenDigit) {
+            return INVALID_GAZE;
+         }
+         value = negative ? -value : value;
+         if (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) {
+            return INVALID_GAZE;
+         }
+         if (count == 0) {
+            x = (int) value;
+         } else if (count == 1) {
+            // only whitespace and the ignored characters may follow the second
+            // coordinate, and they were skipped above
+            return i < end ? INVALID_GAZE : packGaze(x, (int) value);
+         }
+         count++;
+         i++; // skip the comma
+      }
+      return INVALID_GAZE;
+   }
+
+   public static long packGaze(int x, int y) {
+      return ((long) x << 32) | (y & 0xFFFFFFFFL);
+   }
+
+   public static int gazeX(long gaze) {
+      return (int) (gaze >> 32);
+   }
+
+   public static int gazeY(long gaze) {
+      return (int) gaze;
+   }
+
+   /**
+    * Parses a comma separated list of emotion scores. The i-th score is written
+    * to {@code out[offset + i * stride]}; scores beyond {@code max} are parsed
+    * and counted but not stored.
+    *
+    * @param data   raw emotion payload
+    * @param out    destination array
+    * @param offset index of the first score in {@code out}
+    * @param stride distance between consecutive scores in {@code out}
+    * @param max    maximum number of scores to store
+    * @return number of scores in the payload, or {@link #INVALID_EMOTIONS} if it
+    *         is malformed
+    */
+   public static int parseEmotions(CharSequence data, float[] out, int offset, int stride, int max) {
+      int length = data.length();
+      int count = 0;
+      int i = 0;
+      while (i <= length) {
+         int tokenEnd = indexOf(data, ',', i);
+         if (tokenEnd < 0) {
+            tokenEnd = length;
+         }
+         float value = parseFloat(data, i, tokenEnd);
+         if (Float.isNaN(value)) {
+            return INVALID_EMOTIONS;
+         }
+         if (count < max) {
+            out[offset + count * stride] = value;
+         }
+         count++;
+         i = tokenEnd + 1;
+      }
+      return count;
+   }
+
+   /**
+    * Parses a trimmed decimal number in {@code [from, to)}.
+    *
+    * @return the value, or NaN if the text is not a decimal number
+    */
+   private static float parseFloat(CharSequence data, int from, int to) {
+      while (from < to && Character.isWhitespace(data.charAt(from))) {
+         from++;
+      }
+      while (to > from && Character.isWhitespace(data.charAt(to - 1))) {
+         to--;
+      }
+      int i = from;
+      boolean negative = false;
+      if (i < to && (data.charAt(i) == '-' || data.charAt(i) == '+')) {
+         negative = data.charAt(i) == '-';
+         i++;
+      }
+
+      long mantissa = 0;
+      int digits = 0;
+      int exponent = 0;
+      boolean seenDigit = false;
+      boolean seenPoint = false;
+      for (; i < to; i++) {
+         char c = data.charAt(i);
+         if (c >= '0' && c <= '9') {
+            seenDigit = true;
+            if (digits < MAX_MANTISSA_DIGITS) {
+               if (mantissa != 0 || c != '0') {
+                  digits++;
+               }
+               mantissa = mantissa * 10 + (c - '0');
+               if (seenPoint) {
+                  exponent--;
+               }
+            } else if (!seenPoint) {
+               // digits past the precision of a long still scale the value
+               exponent++;
+            }
+         } else if (c == '.' && !seenPoint) {
+            seenPoint = true;
+         } else {
+            break;
+         }
+      }
+      if (!seenDigit) {
+         return Float.NaN;
+      }
+
+      if (i < to && (data.charAt(i) == 'e' || data.charAt(i) == 'E')) {
+         i++;
+         boolean negativeExponent = false;
+         if (i < to && (data.charAt(i) == '-' || data.charAt(i) == '+')) {
+            negativeExponent = data.charAt(i) == '-';
+            i++;
+         }
+         int explicitExponent = 0;
+         boolean seenExponentDigit = false;
+         for (; i < to; i++) {
+            char c = data.charAt(i);
+            if (c < '0' || c > '9') {
+               break;
+            }
+            seenExponentDigit = true;
+            explicitExponent = Math.min(explicitExponent * 10 + (c - '0'), 1000);
+         }
+         if (!seenExponentDigit) {
+            return Float.NaN;
+         }
+         exponent += negativeExponent ? -explicitExponent : explicitExponent;
+      }
+      if (i != to) {
+         return Float.NaN;
+      }
+
+      double value = mantissa;
+      if (exponent < 0) {
+         value = -exponent < POWERS_OF_TEN.length ? value / POWERS_OF_TEN[-exponent] : value / Math.pow(10, -exponent);
+      } else if (exponent > 0) {
+         value = exponent < POWERS_OF_TEN.length ? value * POWERS_OF_TEN[exponent] : value * Math.pow(10, exponent);
+      }
+      return (float) (negative ? -value : value);
+   }
+
+   private static boolean isIgnored(char c) {
+      return c == '{' || c == '}' || c == '(' || c == ')' || c == '\'';
+   }
+
+   private static int indexOf(CharSequence data, char target, int from) {
+      for (int i = from; i < data.length(); i++) {
+         if (data.charAt(i) == target) {
+            return i;
+         }
+      }
+      return -1;
+   }
+}
@@ -0,0 +1,204 @@
+package app.Model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One stage of a {@link ProcessingPipeline}: a bounded {@link SheddingQueue}
+ * consumed by a single worker that hands the items to a {@link Handler} in
+ * batches.
+ * <p>
+ * Every stage is configured on its own: the capacity and overflow policy of its
+ * input queue, the maximum batch size and whether its worker gets a dedicated
+ * platform thread (CPU-bound work) or runs on {@link TaskExecutors#io()}
+ * (blocking work such as exporters). A slow stage therefore only sheds its own
+ * input and never delays the stage that feeds it.
+ * <p>
+ * The stage counts the items it handled and the time spent handling them, and
+ * periodically reports its throughput through the logger; the queueing latency
+ * comes from the input queue.
+ *
+ * @param <T> type of the items the stage consumes
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class PipelineStage<T> implements Runnable {
+
+   private static final Logger LOGGER = LoggerFactory.getLogger(PipelineStage.class);
+   private static final long REPORT_INTERVAL_MS = 10_000;
+   private static final long POLL_TIMEOUT_MS = 500;
+
+   /**
+    * The thread a stage's worker runs on.
+    */
+   public enum Binding {
+      /** a platform thread of its own, for CPU-bound stages */
+      DEDICATED,
+      /** the shared executor for blocking tasks */
+      IO
+   }
+
+   /**
+    * Work done by a stage.
+    *
+    * @param <T> type of the items
+    */
+   @FunctionalInterface
+   public interface Handler<T> {
+      /**
+       * Handles a batch of items in queue order. The items are released by the
+       * stage afterwards and must not be kept.
+       *
+       * @param batch one to {@code batchSize} items
+       * @throws Exception if the batch could not be handled; the stage logs the
+       *                   failure and continues with the next batch
+       */
+      void handle(List<T> batch) throws Exception;
+   }
+
+   private final String name;
+   private final SheddingQueue<T> input;
+   private final int batchSize;
+   private final Binding binding;
+   private final Handler<T> handler;
+   private final Consumer<? super T> release;
+   private volatile boolean running = true;
+   private volatile long handled;
+   private volatile long handleNanos;
+   private volatile long failures;
+
+   /**
+    * @param name      name used for the worker thread and the reports
+    * @param capacity  capacity of the input queue
+    * @param policy    what the input queue drops when it is full
+    * @param batchSize maximum number of items handed to the handler at once
+    * @param binding   the thread the worker runs on
+    * @param handler   the work of the stage
+    * @param release   called with every item once it is handled or dropped,
+    *                  e.g. to return pooled objects; may be null
+    */
+   public PipelineStage(String name, int capacity, OverflowPolicy policy, int batchSize, Binding binding,
+         Handler<T> handler, Consumer<? super T> release) {
+      this.name = name;
+      this.input = new SheddingQueue<>(capacity, policy, Blackboard.STALE_DATA_IN_MS, release);
+      this.batchSize = Math.max(1, batchSize);
+      this.binding = binding;
+      this.handler = handler;
+      this.release = release;
+   }
+
+   public String getName() {
+      return name;
+   }
+
+   public Binding getBinding() {
+      return binding;
+   }
+
+   /**
+    * Queues an item for the stage. Never blocks.
+    *
+    * @return false if the item was dropped by the overflow policy
+    */
+   public boolean offer(T item) {
+      return input.offer(item);
+   }
+
+   /**
+    * Handles batches until {@link #stop()} is called.
+    */
+   @Override
+   public void run() {
+      List<T> batch = new ArrayList<>(batchSize);
+      long lastReport = System.currentTimeMillis();
+      long handledAtLastReport = 0;
+      try {
+         while (running) {
+            if (input.drainTo(batch, batchSize, POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS) > 0) {
+               handleBatch(batch);
+            }
+            long now = System.currentTimeMillis();
+            if (now - lastReport >= REPORT_INTERVAL_MS) {
+               long total = handled;
+               if (total != handledAtLastReport) {
+                  double perSecond = (total - handledAtLastReport) * 1000.0 / (now - lastReport);
+                  LOGGER.info("Stage {}: {} items/s, backlog {}", name, String.format("%.1f", perSecond),
+                        input.size());
+               }
+               lastReport = now;
+               handledAtLastReport = total;
+            }
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      } finally {
+         input.clear();
+      }
+   }
+
+   /**
+    * Makes the worker return after the current batch. Queued items are
+    * released.
+    */
+   public void stop() {
+      running = false;
+   }
+
+   /**
+    * @return the current metrics of the stage
+    */
+   public Metrics getMetrics() {
+      long count = handled;
+      return new Metrics(name, count, input.getShedCount(), failures, input.size(), input.getLatency(),
+            count == 0 ? 0 : handleNanos / 1e6 / count);
+   }
+
+   /**
+    * Throughput and latency of a stage.
+    *
+    * @param name             name of the stage
+    * @param handled          number of items handled
+    * @param shed             number of items dropped by the input queue
+    * @param failures         number of batches whose handler failed
+    * @param backlog          number of items waiting
+    * @param queueLatency     how long the handled items waited in the queue
+    * @param meanHandleMillis mean handling time per item
+    */
+   public record Metrics(String name, long handled, long shed, long failures, int backlog,
+         SheddingQueue.Latency queueLatency, double meanHandleMillis) {
+
+      @Override
+      public String toString() {
+         return String.format("%s[handled=%d shed=%d failures=%d backlog=%d wait=%.2fms handle=%.3fms]",
+               name, handled, shed, failures, backlog, queueLatency.meanMillis(), meanHandleMillis);
+      }
+   }
+
+   private void handleBatch(List<T> batch) {
+      long start = System.nanoTime();
+      try {
+         handler.handle(batch);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         running = false;
+      } catch (Exception e) {
+         failures++;
+         LOGGER.warn("Stage {} failed to handle a batch: {}", name, e.toString());
+      }
+      // only the worker writes the counters
+      handleNanos += System.nanoTime() - start;
+      handled += batch.size();
+      if (release != null) {
+         batch.forEach(release);
+      }
+      batch.clear();
+   }
+}
@@ -0,0 +1,96 @@
+package app.Model;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A set of {@link SheddingQueue}s (lanes) consumed in strict priority order:
+ * an item is only taken from a lane when every lane of higher priority is
+ * empty. Rare but important items, such as emotion updates, therefore never
+ * wait behind a backlog of frequent ones.
+ * <p>
+ * Each lane keeps its own capacity, overflow policy, shed count and latency
+ * statistics.
+ *
+ * @param <T> type of the queued items
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class PriorityLanes<T> {
+
+   private final List<SheddingQueue<T>> lanes;
+   private final ReentrantLock lock = new ReentrantLock();
+   private final Condition notEmpty = lock.newCondition();
+
+   /**
+    * @param lanes the lanes, highest priority first
+    */
+   public PriorityLanes(List<SheddingQueue<T>> lanes) {
+      this.lanes = List.copyOf(lanes);
+   }
+
+   public SheddingQueue<T> lane(int lane) {
+      return lanes.get(lane);
+   }
+
+   /**
+    * Adds an item to a lane and wakes the consumer.
+    *
+    * @param lane index of the lane
+    * @return false if the item was dropped by the lane's policy
+    */
+   public boolean offer(int lane, T item) {
+      boolean added = lanes.get(lane).offer(item);
+      lock.lock();
+      try {
+         notEmpty.signal();
+      } finally {
+         lock.unlock();
+      }
+      return added;
+   }
+
+   /**
+    * Takes the oldest item of the highest priority lane that has one, waiting up
+    * to the timeout if all lanes are empty.
+    *
+    * @return the item, or null if the timeout elapsed
+    * @throws InterruptedException if interrupted while waiting
+    */
+   public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+      long nanos = unit.toNanos(timeout);
+      lock.lockInterruptibly();
+      try {
+         while (true) {
+            for (SheddingQueue<T> lane : lanes) {
+               T item = lane.poll(0, TimeUnit.NANOSECONDS);
+               if (item != null) {
+                  return item;
+               }
+            }
+            if (nanos <= 0) {
+               return null;
+            }
+            nanos = notEmpty.awaitNanos(nanos);
+         }
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * @return total number of items dropped by all lanes
+    */
+   public long getShedCount() {
+      long shed = 0;
+      for (SheddingQueue<T> lane : lanes) {
+         shed += lane.getShedCount();
+      }
+      return shed;
+   }
+}
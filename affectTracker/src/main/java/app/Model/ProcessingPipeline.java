@@ -0,0 +1,247 @@
+package app.Model;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import app.Data.ProcessedDataObject;
+
+/**
+ * The stages a session's processed data passes through, such as smoothing or
+ * fixation detection, and the stages that consume it after the view stage,
+ * such as the streaming analytics or exporters.
+ * <p>
+ * Processing stages, declared with {@link #addProcessingStage}, form a chain
+ * between the {@link RawDataProcessor} and the {@link ViewDataProcessor}: the
+ * raw data processor hands every sample to {@link #process}, each stage
+ * changes or drops the samples it is interested in and passes the rest on in
+ * order, and the last one hands them to the sink, the processed data queue the
+ * view stage takes them from. A smoothing stage can therefore move the gaze
+ * points before they become highlights. Samples a stage is not interested in
+ * skip it, so emotion updates keep overtaking the gaze points waiting in a
+ * gaze stage.
+ * <p>
+ * Consuming stages, declared with {@link #addStage}, see the samples after the
+ * view stage: the {@link ViewDataProcessor} publishes every processed sample
+ * to the pipeline, which hands each interested stage its own pooled copy.
+ * Adding an analytic therefore neither touches the hot path nor runs inside
+ * another stage.
+ * <p>
+ * Either kind of stage gets its own bounded input queue, batch size and thread
+ * (see {@link PipelineStage}), so a slow stage only sheds its own input.
+ * Stages start when they are added and stop when the pipeline is closed,
+ * together with its session.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class ProcessingPipeline implements AutoCloseable {
+
+   /**
+    * Where the samples go after the last processing stage.
+    */
+   @FunctionalInterface
+   public interface Sink {
+      /**
+       * @param data a processed sample, now owned by the sink
+       * @throws InterruptedException if interrupted while waiting for space
+       */
+      void accept(ProcessedDataObject data) throws InterruptedException;
+   }
+
+   /**
+    * Work done by a processing stage on one sample.
+    */
+   @FunctionalInterface
+   public interface Transform {
+      /**
+       * Changes the sample in place, e.g. moves its gaze point.
+       *
+       * @param data a sample the stage is interested in; must not be kept
+       * @return whether to pass the sample on, false to drop it
+       * @throws Exception if the sample could not be handled; the stage logs
+       *                   the failure and drops the rest of the batch
+       */
+      boolean apply(ProcessedDataObject data) throws Exception;
+   }
+
+   private final String name;
+   private final Sink sink;
+   private final List<Hop> chain = new CopyOnWriteArrayList<>();
+   private final List<Tap> taps = new CopyOnWriteArrayList<>();
+   private volatile boolean closed = false;
+
+   /**
+    * @param name prefix of the stage names, e.g. the session id
+    * @param sink receives the samples after the processing stages
+    */
+   public ProcessingPipeline(String name, Sink sink) {
+      this.name = name;
+      this.sink = sink;
+   }
+
+   /**
+    * Appends a stage to the chain of processing stages and starts its worker.
+    *
+    * @param stageName name of the stage
+    * @param filter    selects the samples the stage processes; the others skip
+    *                  it
+    * @param capacity  capacity of the stage's input queue; the oldest samples
+    *                  are dropped when it is full
+    * @param batchSize maximum number of samples handled at once
+    * @param binding   the thread the stage runs on
+    * @param transform the work of the stage
+    * @return the stage, e.g. to read its metrics
+    * @throws IllegalStateException if the pipeline is closed
+    */
+   public PipelineStage<ProcessedDataObject> addProcessingStage(String stageName,
+         Predicate<ProcessedDataObject> filter, int capacity, int batchSize, PipelineStage.Binding binding,
+         Transform transform) {
+      Hop hop = new Hop(filter, transform);
+      hop.stage = start(stageName, capacity, batchSize, binding, hop);
+      chain.add(hop);
+      return hop.stage;
+   }
+
+   /**
+    * Declares a stage consuming the samples after the view stage and starts its
+    * worker.
+    *
+    * @param stageName name of the stage
+    * @param filter    selects the samples the stage receives
+    * @param capacity  capacity of the stage's input queue; the oldest samples
+    *                  are dropped when it is full
+    * @param batchSize maximum number of samples handled at once
+    * @param binding   the thread the stage runs on
+    * @param handler   the work of the stage
+    * @return the stage, e.g. to read its metrics
+    * @throws IllegalStateException if the pipeline is closed
+    */
+   public PipelineStage<ProcessedDataObject> addStage(String stageName, Predicate<ProcessedDataObject> filter,
+         int capacity, int batchSize, PipelineStage.Binding binding, PipelineStage.Handler<ProcessedDataObject> handler) {
+      PipelineStage<ProcessedDataObject> stage = start(stageName, capacity, batchSize, binding, handler);
+      taps.add(new Tap(filter, stage));
+      return stage;
+   }
+
+   private PipelineStage<ProcessedDataObject> start(String stageName, int capacity, int batchSize,
+         PipelineStage.Binding binding, PipelineStage.Handler<ProcessedDataObject> handler) {
+      if (closed) {
+         throw new IllegalStateException("Pipeline " + name + " is closed");
+      }
+      PipelineStage<ProcessedDataObject> stage = new PipelineStage<>(name + "-" + stageName, capacity,
+            OverflowPolicy.DROP_OLDEST, batchSize, binding, handler, ProcessedDataObject::recycle);
+      if (binding == PipelineStage.Binding.DEDICATED) {
+         TaskExecutors.platformThreads(stage.getName()).newThread(stage).start();
+      } else {
+         TaskExecutors.io().execute(stage);
+      }
+      return stage;
+   }
+
+   /**
+    * Stops a stage and removes it from the pipeline.
+    *
+    * @param stage a stage returned by {@link #addStage}
+    */
+   public void removeStage(PipelineStage<ProcessedDataObject> stage) {
+      chain.removeIf(hop -> hop.stage == stage);
+      taps.removeIf(tap -> tap.stage() == stage);
+      stage.stop();
+   }
+
+   /**
+    * Passes a sample into the chain of processing stages, or straight to the
+    * sink if no stage is interested in it. Does not block unless the sink does.
+    *
+    * @param data a processed sample, now owned by the pipeline
+    * @throws InterruptedException if interrupted while waiting for the sink
+    */
+   public void process(ProcessedDataObject data) throws InterruptedException {
+      forward(null, data);
+   }
+
+   /**
+    * Hands a sample to the first interested processing stage after the given
+    * one, or to the sink after the last.
+    *
+    * @param from the stage the sample comes from, null for the start of the
+    *             chain
+    */
+   private void forward(Hop from, ProcessedDataObject data) throws InterruptedException {
+      boolean after = from == null;
+      for (Hop hop : chain) {
+         if (after && hop.filter.test(data)) {
+            hop.stage.offer(data);
+            return;
+         }
+         after |= hop == from;
+      }
+      sink.accept(data);
+   }
+
+   /**
+    * Hands a copy of the sample to every stage interested in it. Never blocks;
+    * the caller keeps ownership of the sample.
+    *
+    * @param data a processed sample
+    */
+   public void publish(ProcessedDataObject data) {
+      for (Tap tap : taps) {
+         if (tap.filter().test(data)) {
+            tap.stage().offer(data.copy());
+         }
+      }
+   }
+
+   /**
+    * @return the metrics of every stage, the processing stages first, each
+    *         kind in declaration order
+    */
+   public List<PipelineStage.Metrics> getMetrics() {
+      return Stream.concat(chain.stream().map(hop -> hop.stage), taps.stream().map(Tap::stage))
+            .map(PipelineStage::getMetrics).toList();
+   }
+
+   /**
+    * Stops every stage. Samples still queued are released.
+    */
+   @Override
+   public void close() {
+      closed = true;
+      chain.forEach(hop -> hop.stage.stop());
+      taps.forEach(tap -> tap.stage().stop());
+      chain.clear();
+      taps.clear();
+   }
+
+   private record Tap(Predicate<ProcessedDataObject> filter, PipelineStage<ProcessedDataObject> stage) {
+   }
+
+   /**
+    * A processing stage in the chain: transforms its samples and forwards them.
+    */
+   private class Hop implements PipelineStage.Handler<ProcessedDataObject> {
+      private final Predicate<ProcessedDataObject> filter;
+      private final Transform transform;
+      private PipelineStage<ProcessedDataObject> stage;
+
+      Hop(Predicate<ProcessedDataObject> filter, Transform transform) {
+         this.filter = filter;
+         this.transform = transform;
+      }
+
+      @Override
+      public void handle(List<ProcessedDataObject> batch) throws Exception {
+         for (ProcessedDataObject data : batch) {
+            if (transform.apply(data)) {
+               // the stage recycles the batch, so the next hop gets a copy
+               forward(this, data.copy());
+            }
+         }
+      }
+   }
+}
@@ -2,9 +2,10 @@ package app.Model;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,7 +24,17 @@ import app.Data.ProcessedDataObject;
  * emotion.
  * <p>
  * This class implements {@link Runnable} and is designed to run as a separate
- * thread.
+ * thread. The thread only takes the raw samples of one session off the input
+ * queues; converting them is handed to a {@link ShardedProcessingStage}. The gaze
+ * and the emotion stream of a session are submitted under keys of their own, so
+ * each stream stays in order while the two, and the streams of other sessions
+ * sharing the stage, are processed on different cores. A single session thus
+ * uses at most two shards; more cores pay off with several sessions on one
+ * stage, as in {@code HubNode}.
+ * <p>
+ * For replay and bulk workloads a batch size can be set on the
+ * {@link Blackboard}; the samples are then drained in groups and their emotion
+ * scores are validated and scored together by an {@link EmotionScorer}.
  * <p>
  * The class relies on a {@link Blackboard} to retrieve data from the input
  * queues and add
@@ -48,138 +59,379 @@ import app.Data.ProcessedDataObject;
 public class RawDataProcessor implements Runnable, PropertyChangeListener {
 
    public static final String THREAD_NAME = "DataProcessor";
+   private static final String STREAM_DELIMITER = "/";
    private static final Logger LOGGER = LoggerFactory.getLogger(RawDataProcessor.class);
-   private boolean running = false;
+   // per shard thread buffer for the scores of a single sample
+   private static final ThreadLocal<float[]> SCORE_SCRATCH =
+         ThreadLocal.withInitial(() -> new float[EmotionScorer.EMOTION_COUNT]);
+   private final Blackboard blackboard;
+   private volatile boolean running = false;
+   private volatile boolean closed = false;
+   // the idle thread parks here until Start or close instead of polling
+   private final ReentrantLock stateLock = new ReentrantLock();
+   private final Condition stateChanged = stateLock.newCondition();
+   private final boolean ownsStage;
+   private final ShardedProcessingStage stage;
+   private final String gazeKey;
+   private final String emotionKey;
+   private final EmotionScorer scorer = EmotionScorer.create();
 
    public RawDataProcessor() {
-      Blackboard.getInstance().addPropertyChangeListener(Blackboard.STOPPED, this);
-      Blackboard.getInstance().addPropertyChangeListener(Blackboard.STARTED, this);
+      this(Blackboard.getInstance());
+   }
+
+   /**
+    * Creates a processor with its own worker pool of
+    * {@link Blackboard#getProcessingShards()} shards.
+    *
+    * @param blackboard the session whose raw data is processed
+    */
+   public RawDataProcessor(Blackboard blackboard) {
+      this(blackboard, new ShardedProcessingStage(THREAD_NAME, blackboard.getProcessingShards()), true);
+   }
+
+   /**
+    * Creates a processor that shares a worker pool with other sessions. The
+    * samples are keyed by the session id and stream, so each stream stays in
+    * order.
+    *
+    * @param blackboard the session whose raw data is processed
+    * @param stage      worker pool the samples are processed on
+    */
+   public RawDataProcessor(Blackboard blackboard, ShardedProcessingStage stage) {
+      this(blackboard, stage, false);
+   }
+
+   private RawDataProcessor(Blackboard blackboard, ShardedProcessingStage stage, boolean ownsStage) {
+      this.blackboard = blackboard;
+      this.stage = stage;
+      this.gazeKey = blackboard.getSessionId() + STREAM_DELIMITER + Blackboard.EYE_DATA_LABEL;
+      this.emotionKey = blackboard.getSessionId() + STREAM_DELIMITER + Blackboard.EMOTION_DATA_LABEL;
+      this.ownsStage = ownsStage;
+      // the processor may be created after Start was pressed
+      this.running = blackboard.isStarted();
+      blackboard.addPropertyChangeListener(Blackboard.STOPPED, this);
+      blackboard.addPropertyChangeListener(Blackboard.STARTED, this);
+      blackboard.addPropertyChangeListener(Blackboard.CLOSED, this);
    }
 
    @Override
    public void run() {
       try {
-         while (true) {
-            while (running) {
-               doYourWork();
-            }
-            Thread.sleep(1000);
+         while (awaitRunning()) {
+            doYourWork();
          }
       } catch (InterruptedException e) {
          LOGGER.error(THREAD_NAME + " thread was interrupted", e);
          Thread.currentThread().interrupt();
       } catch (Exception e) {
          LOGGER.warn(e.toString());
+      } finally {
+         if (ownsStage) {
+            stage.shutdown();
+         }
+      }
+   }
+
+   /**
+    * Blocks while processing is stopped.
+    *
+    * @return false once the session is closed
+    * @throws InterruptedException if interrupted while waiting
+    */
+   private boolean awaitRunning() throws InterruptedException {
+      if (running) {
+         return true;
+      }
+      stateLock.lockInterruptibly();
+      try {
+         while (!running && !closed) {
+            stateChanged.await();
+         }
+         return !closed;
+      } finally {
+         stateLock.unlock();
+      }
+   }
+
+   /**
+    * Makes {@link #run()} return, as if the session had been closed.
+    */
+   public void cleanUpThread() {
+      setState(false, true);
+   }
+
+   private void setState(boolean running, boolean closed) {
+      stateLock.lock();
+      try {
+         this.running = running;
+         this.closed = closed;
+         stateChanged.signalAll();
+      } finally {
+         stateLock.unlock();
       }
    }
 
    private void doYourWork() throws InterruptedException {
+      int batchSize = blackboard.getProcessingBatchSize();
+      if (batchSize > 1) {
+         doBatchWork(batchSize);
+         return;
+      }
+      // take a waiting emotion sample first, so it is never held up by the wait for gaze
+      String emotion = blackboard.tryPollEmotionQueue();
       // Poll with a timeout to prevent blocking indefinitely
-      String eyeTrackingData = Blackboard.getInstance().pollEyeTrackingQueue();
-      String emotionData = Blackboard.getInstance().pollEmotionQueue();
-      if (eyeTrackingData != null) {
-         LOGGER.info("ProcessingThread: Processing data pair: " + eyeTrackingData + ", " + emotionData);
-         // Process the pair of data
-         List<Integer> coordinates = convertToIntegerList(eyeTrackingData);
-         List<Float> emotionScores = null;
-         Emotion prominentEmotion;
-
-         if (emotionData != null) {
-            emotionScores = convertToFloatList(emotionData);
-            // if the emotion data is invalid, use neutral
-            if (!isValidEmotionData(emotionScores)) {
-               logInvalidEmotionData(emotionData);
-               prominentEmotion = Emotion.NONE;
-            } else {
-               prominentEmotion = getProminentEmotion(emotionScores);
-            }
-         } else {
-            prominentEmotion = Emotion.NONE;
-         }
-         if (!isValidEyeTrackingData(coordinates)) {
-            logInvalidEyeTrackingData(eyeTrackingData);
-            return; // we can't do anything without eye tracking
-         }
-         ProcessedDataObject processedData = new ProcessedDataObject(
-               coordinates.get(0),
-               coordinates.get(1),
-               prominentEmotion,
-               emotionScores);
-         LOGGER.info("Processed data created: " + processedData);
-         Blackboard.getInstance().addToProcessedDataQueue(processedData);
-      }
-      // debugging client/server communication
-      else if (emotionData != null) {
-         // create a processed data object with no eye tracking data
-         List<Float> emotionScores = convertToFloatList(emotionData);
-         Emotion prominentEmotion = getProminentEmotion(emotionScores);
-         ProcessedDataObject processedData = new ProcessedDataObject(
-               -1,
-               -1,
-               prominentEmotion,
-               emotionScores);
-         LOGGER.info("Processed data created: " + processedData);
-         Blackboard.getInstance().addToProcessedDataQueue(processedData);
-      } else {
+      String eyeTrackingData = emotion == null
+            ? blackboard.pollEyeTrackingQueue()
+            : blackboard.tryPollEyeTrackingQueue();
+      if (eyeTrackingData == null && emotion == null) {
+         emotion = blackboard.pollEmotionQueue();
+      }
+      String emotionData = emotion;
+      if (eyeTrackingData == null && emotionData == null) {
          // Handle timeout case or missing data
          LOGGER.warn(THREAD_NAME + ": Timed out waiting for data, or one client is slow.");
+         return;
+      }
+      long received = System.nanoTime();
+      // the gaze sample keeps its place behind the gaze backlog, only the
+      // emotion update skips it in case both streams share a shard
+      if (eyeTrackingData != null) {
+         stage.submit(gazeKey, () -> processSample(eyeTrackingData, null, received));
+      }
+      if (emotionData != null) {
+         stage.submitUrgent(emotionKey, () -> processSample(null, emotionData, received));
       }
    }
 
-   private boolean isValidEyeTrackingData(List<Integer> data) {
-      return data != null && data.stream().allMatch(number -> number >= 0);
+   /**
+    * Drains up to {@code batchSize} samples of each kind and hands them to the
+    * stage as one task per stream.
+    *
+    * @param batchSize maximum number of samples of each kind in one batch
+    * @throws InterruptedException if interrupted while waiting for data
+    */
+   private void doBatchWork(int batchSize) throws InterruptedException {
+      List<String> eyeTrackingData = new ArrayList<>(batchSize);
+      List<String> emotionData = new ArrayList<>(batchSize);
+      blackboard.drainEyeTrackingQueue(eyeTrackingData, batchSize);
+      blackboard.drainEmotionQueue(emotionData, batchSize);
+      if (eyeTrackingData.isEmpty() && emotionData.isEmpty()) {
+         LOGGER.warn(THREAD_NAME + ": Timed out waiting for data, or one client is slow.");
+         return;
+      }
+      long received = System.nanoTime();
+      if (!eyeTrackingData.isEmpty()) {
+         stage.submit(gazeKey, eyeTrackingData.size(), () -> processGazeBatch(eyeTrackingData, received));
+      }
+      if (!emotionData.isEmpty()) {
+         stage.submit(emotionKey, emotionData.size(), () -> processEmotionBatch(emotionData, received));
+      }
    }
 
-   private List<Integer> convertToIntegerList(String data) {
+   /**
+    * Converts a raw gaze or emotion sample into a {@link ProcessedDataObject}
+    * and adds it to the processed data queue. Runs on the shard owning the
+    * sample's stream.
+    *
+    * @param eyeTrackingData raw gaze payload, or null if none arrived
+    * @param emotionData     raw emotion payload, or null if none arrived
+    * @param received        {@link System#nanoTime()} when the samples were taken
+    *                        from the input queues
+    */
+   private void processSample(String eyeTrackingData, String emotionData, long received) {
       try {
-         // split on ":", remove the parens/brackets from {'gaze_point_on_display_area':
-         // (335, 247)}
-         data = data.split(":")[1].trim();
-         data = data.replaceAll("[{}()']", "");
-         // split on "," in "335, 247"
-         return Arrays.stream(data.split(","))
-               .map(String::trim)
-               .map(Integer::parseInt)
-               .collect(Collectors.toList());
-      } catch (NumberFormatException e) {
-         logInvalidEyeTrackingData(data);
-         return null;
+         convertSample(eyeTrackingData, emotionData, received);
+      } catch (InterruptedException e) {
+         LOGGER.error(THREAD_NAME + " shard was interrupted", e);
+         Thread.currentThread().interrupt();
       }
    }
 
+   private void convertSample(String eyeTrackingData, String emotionData, long received)
+         throws InterruptedException {
+      float[] emotionScores = null;
+      int scoreCount = 0;
+      if (emotionData != null) {
+         emotionScores = SCORE_SCRATCH.get();
+         scoreCount = convertToFloats(emotionData, emotionScores, 0, 1);
+         if (scoreCount < 0) {
+            emotionScores = null;
+         }
+      }
+      Emotion argmax = emotionScores == null ? null : getProminentEmotion(emotionScores, scoreCount);
+      boolean validEmotion = emotionScores != null && isValidEmotionData(emotionScores, scoreCount);
+      publish(eyeTrackingData, emotionData, emotionScores, 0, 1, scoreCount, argmax, validEmotion, received);
+   }
+
+   /**
+    * Converts a batch of raw gaze samples drained from the queue, in order.
+    *
+    * @param eyeTrackingData raw gaze payloads in arrival order
+    * @param received        {@link System#nanoTime()} when the batch was drained
+    */
+   private void processGazeBatch(List<String> eyeTrackingData, long received) {
+      try {
+         for (String eye : eyeTrackingData) {
+            publish(eye, null, null, 0, 1, 0, null, false, received);
+         }
+      } catch (InterruptedException e) {
+         LOGGER.error(THREAD_NAME + " shard was interrupted", e);
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   /**
+    * Converts a batch of raw emotion samples drained from the queue. All of
+    * them are validated and scored in one pass by the {@link EmotionScorer} and
+    * published in order.
+    *
+    * @param emotionData raw emotion payloads in arrival order
+    * @param received    {@link System#nanoTime()} when the batch was drained
+    */
+   private void processEmotionBatch(List<String> emotionData, long received) {
+      int emotionCount = emotionData.size();
+      float[] scores = new float[EmotionScorer.EMOTION_COUNT * emotionCount];
+      int[] scoreCounts = new int[emotionCount];
+      int[] prominent = new int[emotionCount];
+      boolean[] valid = new boolean[emotionCount];
+      for (int i = 0; i < emotionCount; i++) {
+         scoreCounts[i] = convertToFloats(emotionData.get(i), scores, i, emotionCount);
+         // missing scores count as inactive emotions
+         for (int e = Math.max(scoreCounts[i], 0); e < EmotionScorer.EMOTION_COUNT; e++) {
+            scores[e * emotionCount + i] = -1;
+         }
+      }
+      scorer.score(scores, emotionCount, emotionCount, prominent, valid);
+
+      try {
+         for (int i = 0; i < emotionCount; i++) {
+            boolean parsed = scoreCounts[i] >= 0;
+            publish(null, emotionData.get(i), parsed ? scores : null, i, emotionCount, parsed ? scoreCounts[i] : 0,
+                  parsed ? Emotion.getByValue(prominent[i]) : null, parsed && valid[i], received);
+         }
+      } catch (InterruptedException e) {
+         LOGGER.error(THREAD_NAME + " shard was interrupted", e);
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   /**
+    * Creates the {@link ProcessedDataObject}s for a gaze and/or an emotion
+    * sample and adds them to the processed data queue: the gaze point and the
+    * emotion update go separately, so only the emotion update takes the emotion
+    * lane while the gaze point stays in order with the other gaze points. Emotion samples with
+    * scores out of range or without an active emotion publish nothing, whether
+    * they came with gaze or alone.
+    *
+    * @param eyeTrackingData raw gaze payload, or null if none arrived
+    * @param emotionData     raw emotion payload, or null if none arrived
+    * @param scores          array holding the parsed emotion scores, or null if
+    *                        missing or malformed
+    * @param offset          index of the first score in {@code scores}
+    * @param stride          distance between consecutive scores in {@code scores}
+    * @param scoreCount      number of parsed scores
+    * @param argmax          emotion with the highest score, or null without scores
+    * @param validEmotion    whether every emotion score is within range
+    * @param received        {@link System#nanoTime()} when the samples were taken
+    *                        from the input queues
+    */
+   private void publish(String eyeTrackingData, String emotionData, float[] scores, int offset, int stride,
+         int scoreCount, Emotion argmax, boolean validEmotion, long received) throws InterruptedException {
+      if (eyeTrackingData != null) {
+         LOGGER.debug("ProcessingThread: Processing gaze sample: {}", eyeTrackingData);
+         long coordinates = PayloadParser.parseGaze(eyeTrackingData);
+         if (!isValidEyeTrackingData(coordinates)) {
+            logInvalidEyeTrackingData(eyeTrackingData);
+         } else {
+            // the gaze point alone, so it stays in order with the other gaze points
+            ProcessedDataObject processedData = ProcessedDataObject.obtain().set(
+                  PayloadParser.gazeX(coordinates),
+                  PayloadParser.gazeY(coordinates),
+                  Emotion.NONE,
+                  null, 0, 1, 0).stamp(received);
+            LOGGER.debug("Processed data created: {}", processedData);
+            blackboard.addToProcessedDataQueue(processedData);
+         }
+      }
+      if (emotionData == null || argmax == null) {
+         // no emotion sample, or a malformed one that was already logged
+         return;
+      }
+      if (!validEmotion) {
+         // scores out of range recolor nothing, with or without gaze
+         logInvalidEmotionData(emotionData);
+         return;
+      }
+      if (argmax == Emotion.NONE) {
+         // no active emotion leaves the current highlights as they are
+         LOGGER.debug("No active emotion in {}", emotionData);
+         return;
+      }
+      // the emotion as a separate update, which recolors the current highlights
+      ProcessedDataObject processedData = ProcessedDataObject.obtain().set(
+            -1,
+            -1,
+            argmax,
+            scores, offset, stride, scoreCount).stamp(received);
+      LOGGER.debug("Processed data created: {}", processedData);
+      blackboard.addToProcessedDataQueue(processedData);
+   }
+
+   private boolean isValidEyeTrackingData(long coordinates) {
+      return coordinates != PayloadParser.INVALID_GAZE
+            && PayloadParser.gazeX(coordinates) >= 0 && PayloadParser.gazeY(coordinates) >= 0;
+   }
+
    private void logInvalidEyeTrackingData(String data) {
       LOGGER.warn("Eye-tracking data must be in the form \"int, int\"\n where both are >= 0." +
             "Invalid eye-tracking data format: " + data);
    }
 
-   private boolean isValidEmotionData(List<Float> data) {
-      return data != null && data.stream().allMatch(number -> (number >= 0 && number <= 1) || (number == -1));
+   private boolean isValidEmotionData(float[] data, int count) {
+      for (int i = 0; i < count; i++) {
+         if (!((data[i] >= 0 && data[i] <= 1) || data[i] == -1)) {
+            return false;
+         }
+      }
+      return true;
    }
 
-   private List<Float> convertToFloatList(String data) {
-      try {
-         return Arrays.stream(data.split(","))
-               .map(String::trim)
-               .map(Float::parseFloat)
-               .collect(Collectors.toList());
-      } catch (NumberFormatException e) {
+   /**
+    * Parses the emotion scores of one sample into {@code out}.
+    *
+    * @return the number of scores, or -1 if the payload is malformed or holds
+    *         more scores than there are emotions
+    */
+   private int convertToFloats(String data, float[] out, int offset, int stride) {
+      int count = PayloadParser.parseEmotions(data, out, offset, stride, EmotionScorer.EMOTION_COUNT);
+      if (count == PayloadParser.INVALID_EMOTIONS || count > EmotionScorer.EMOTION_COUNT) {
          logInvalidEmotionData(data);
-         return null; // Or return an empty list, or handle the error as needed
+         return -1;
       }
+      return count;
    }
 
-   public Emotion getProminentEmotion(List<Float> emotionScores) {
-      if (emotionScores == null || emotionScores.isEmpty()) {
-         throw new IllegalArgumentException("List must not be null or empty");
+   /**
+    * Finds the emotion with the highest score; the first one wins ties.
+    *
+    * @param emotionScores scores indexed by {@link Emotion#getValue()}
+    * @param count         number of scores
+    * @return the prominent emotion, or {@link Emotion#NONE} if no emotion was
+    *         active
+    */
+   public Emotion getProminentEmotion(float[] emotionScores, int count) {
+      if (emotionScores == null || count == 0) {
+         throw new IllegalArgumentException("Scores must not be null or empty");
       }
       int maxIndex = 0; // Assume the first element is the largest initially
-      for (int i = 1; i < emotionScores.size(); i++) {
+      for (int i = 1; i < count; i++) {
          // If current element is greater than the current max, update maxIndex
-         if (emotionScores.get(i) > emotionScores.get(maxIndex)) {
+         if (emotionScores[i] > emotionScores[maxIndex]) {
             maxIndex = i;
          }
       }
-      if (emotionScores.get(maxIndex) == -1) {
+      if (emotionScores[maxIndex] == -1) {
          // No emotions were active
          return Emotion.NONE;
       }
@@ -196,11 +448,15 @@ public class RawDataProcessor implements Runnable, PropertyChangeListener {
       switch (evt.getPropertyName()) {
          case Blackboard.STOPPED -> {
             LOGGER.info("blackboard stopped, stopping rdp");
-            running = false;
+            setState(false, closed);
          }
          case Blackboard.STARTED -> {
             LOGGER.info("blackboard started, starting rdp");
-            running = true;
+            setState(true, closed);
+         }
+         case Blackboard.CLOSED -> {
+            LOGGER.info("session {} closed, stopping rdp", blackboard.getSessionId());
+            setState(false, true);
          }
       }
 
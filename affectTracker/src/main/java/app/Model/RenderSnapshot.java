@@ -0,0 +1,31 @@
+package app.Model;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+import app.Data.HighlightSequence;
+
+/**
+ * Everything the view draws of a session at one epoch: the committed highlight
+ * collections and a snapshot of the current highlights. A render snapshot never
+ * changes. The session publishes a new one, with the next epoch, whenever its
+ * highlights change; consecutive snapshots share the collections and the
+ * highlight chunks that did not change.
+ * <p>
+ * Each snapshot also tells the area whose highlights changed since the previous
+ * one, so the view repaints only that area. The area is in the coordinates of
+ * {@link HighlightSequence#bounds()}, and the listeners must not change it.
+ *
+ * @param epoch       increases with every published snapshot
+ * @param collections the committed collections, oldest first
+ * @param pending     the current highlights
+ * @param damage      the area changed since the previous snapshot, empty if
+ *                    nothing was drawn differently, null if unknown
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public record RenderSnapshot(long epoch, List<HighlightSequence> collections, HighlightSequence pending,
+      Rectangle damage) {
+}
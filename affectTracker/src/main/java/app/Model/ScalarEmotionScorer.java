@@ -0,0 +1,44 @@
+package app.Model;
+
+/**
+ * Plain loop implementation of {@link EmotionScorer}, used when the Vector API
+ * is not available.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+class ScalarEmotionScorer implements EmotionScorer {
+
+   @Override
+   public void score(float[] scores, int stride, int count, int[] prominent, boolean[] valid) {
+      scoreRange(scores, stride, 0, count, prominent, valid);
+   }
+
+   /**
+    * Scores samples {@code from} (inclusive) to {@code to} (exclusive). Also used
+    * for the tail of a batch that does not fill a whole vector.
+    */
+   static void scoreRange(float[] scores, int stride, int from, int to, int[] prominent, boolean[] valid) {
+      for (int i = from; i < to; i++) {
+         float max = scores[i];
+         int maxIndex = 0;
+         boolean allValid = isValidScore(max);
+         for (int e = 1; e < EMOTION_COUNT; e++) {
+            float score = scores[e * stride + i];
+            allValid &= isValidScore(score);
+            if (score > max) {
+               max = score;
+               maxIndex = e;
+            }
+         }
+         prominent[i] = max == -1 ? NO_EMOTION : maxIndex;
+         valid[i] = allValid;
+      }
+   }
+
+   private static boolean isValidScore(float score) {
+      return (score >= 0 && score <= 1) || score == -1;
+   }
+}
@@ -0,0 +1,207 @@
+package app.Model;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@code ShardedProcessingStage} runs processing work on a fixed pool of
+ * worker threads, each owning its own task queue (a shard).
+ * <p>
+ * Work is submitted together with a key (a session or stream id). The key is
+ * hashed onto a shard, so every task submitted with the same key runs on the
+ * same worker, in submission order, while tasks with different keys can be
+ * processed on different cores at the same time.
+ * <p>
+ * Urgent tasks (see {@link #submitUrgent(Object, Runnable)}) bypass the
+ * shard's regular backlog and run before any regular task still waiting. They
+ * wait in a small {@link SheddingQueue} of their own that drops the oldest
+ * urgent task when full, since only the latest updates matter.
+ * <p>
+ * Every shard counts the items it has completed and periodically reports its
+ * throughput through the logger.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class ShardedProcessingStage {
+
+   private static final Logger LOGGER = LoggerFactory.getLogger(ShardedProcessingStage.class);
+   private static final long REPORT_INTERVAL_MS = 10_000;
+   private static final long POLL_TIMEOUT_MS = 500;
+   // a full shard blocks the dispatcher, so the backlog builds up in the
+   // shedding input queues instead of here
+   private static final int SHARD_CAPACITY = 1024;
+   private static final int URGENT_CAPACITY = 64;
+   // queued behind urgent tasks only to wake an idle worker
+   private static final Runnable WAKE_UP = () -> { };
+
+   private final String name;
+   private final Shard[] shards;
+
+   /**
+    * Creates the stage and starts one worker thread per shard.
+    *
+    * @param name       name used for the worker threads and throughput reports
+    * @param shardCount number of worker threads; values below 1 are treated as 1
+    */
+   public ShardedProcessingStage(String name, int shardCount) {
+      this.name = name;
+      this.shards = new Shard[Math.max(1, shardCount)];
+      ThreadFactory threads = TaskExecutors.platformThreads(name + "-shard");
+      for (int i = 0; i < shards.length; i++) {
+         shards[i] = new Shard(i);
+         threads.newThread(shards[i]).start();
+      }
+   }
+
+   /**
+    * Queues a task on the shard owning the given key. Tasks with equal keys are
+    * executed one at a time in the order they were submitted.
+    *
+    * @param key  session or stream key used to select the shard
+    * @param task work to run on the shard's thread
+    * @throws InterruptedException if interrupted while waiting for queue space
+    */
+   public void submit(Object key, Runnable task) throws InterruptedException {
+      shards[shardFor(key)].tasks.put(task);
+   }
+
+   /**
+    * Queues a task ahead of the regular tasks of the key's shard, e.g. an
+    * emotion update that must not wait behind a gaze backlog. Urgent tasks run
+    * in submission order among themselves; this call never blocks. If too many
+    * urgent tasks wait, the oldest one is dropped.
+    *
+    * @param key  session or stream key used to select the shard
+    * @param task work to run on the shard's thread
+    */
+   public void submitUrgent(Object key, Runnable task) {
+      Shard shard = shards[shardFor(key)];
+      shard.urgent.offer(task);
+      // if the regular queue is full the worker is busy and sees the task anyway
+      shard.tasks.offer(WAKE_UP);
+   }
+
+   /**
+    * Queues a task that handles several items at once, such as a drained batch
+    * of samples. The items are counted individually in the throughput reports,
+    * so batched and per-item processing can be compared directly.
+    *
+    * @param key   session or stream key used to select the shard
+    * @param items number of items the task handles
+    * @param task  work to run on the shard's thread
+    * @throws InterruptedException if interrupted while waiting for queue space
+    */
+   public void submit(Object key, int items, Runnable task) throws InterruptedException {
+      submit(key, items == 1 ? task : new BatchTask(items, task));
+   }
+
+   /**
+    * Maps a key onto a shard index.
+    *
+    * @param key session or stream key
+    * @return index of the shard responsible for the key
+    */
+   public int shardFor(Object key) {
+      int hash = key == null ? 0 : key.hashCode();
+      // spread the high bits so keys differing only there don't share a shard
+      return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+   }
+
+   public int getShardCount() {
+      return shards.length;
+   }
+
+   /**
+    * @param shard index of the shard
+    * @return number of items the shard has completed since it started
+    */
+   public long getProcessedCount(int shard) {
+      return shards[shard].processed.get();
+   }
+
+   /**
+    * @param shard index of the shard
+    * @return number of tasks waiting on the shard
+    */
+   public int getBacklog(int shard) {
+      return shards[shard].tasks.size() + shards[shard].urgent.size();
+   }
+
+   /**
+    * Stops all workers. Tasks that are still queued are discarded.
+    */
+   public void shutdown() {
+      for (Shard shard : shards) {
+         shard.running = false;
+      }
+   }
+
+   private record BatchTask(int items, Runnable task) implements Runnable {
+      @Override
+      public void run() {
+         task.run();
+      }
+   }
+
+   private class Shard implements Runnable {
+      private final int index;
+      private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>(SHARD_CAPACITY);
+      private final SheddingQueue<Runnable> urgent = new SheddingQueue<>(URGENT_CAPACITY,
+            OverflowPolicy.DROP_OLDEST, 0);
+      private final AtomicLong processed = new AtomicLong();
+      private volatile boolean running = true;
+
+      Shard(int index) {
+         this.index = index;
+      }
+
+      @Override
+      public void run() {
+         long lastReport = System.currentTimeMillis();
+         long processedAtLastReport = 0;
+         try {
+            while (running) {
+               Runnable task = urgent.poll(0, TimeUnit.MILLISECONDS);
+               if (task == null) {
+                  task = tasks.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+               }
+               if (task != null && task != WAKE_UP) {
+                  execute(task);
+               }
+               long now = System.currentTimeMillis();
+               if (now - lastReport >= REPORT_INTERVAL_MS) {
+                  long total = processed.get();
+                  if (total != processedAtLastReport) {
+                     double perSecond = (total - processedAtLastReport) * 1000.0 / (now - lastReport);
+                     LOGGER.info("{} shard {}: {} items/s, backlog {}, urgent tasks dropped {}",
+                           name, index, String.format("%.1f", perSecond), tasks.size(), urgent.getShedCount());
+                  }
+                  lastReport = now;
+                  processedAtLastReport = total;
+               }
+            }
+         } catch (InterruptedException e) {
+            LOGGER.error(name + " shard " + index + " was interrupted", e);
+            Thread.currentThread().interrupt();
+         }
+      }
+
+      private void execute(Runnable task) {
+         try {
+            task.run();
+         } catch (RuntimeException e) {
+            LOGGER.warn("{} shard {} task failed: {}", name, index, e.toString());
+         }
+         processed.addAndGet(task instanceof BatchTask batch ? batch.items() : 1);
+      }
+   }
+}
@@ -0,0 +1,283 @@
+package app.Model;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Bounded FIFO queue that sheds load according to an {@link OverflowPolicy}
+ * instead of growing without limit or blocking its producers.
+ * <p>
+ * Items are kept in a fixed ring together with their enqueue time, so neither
+ * adding nor removing allocates. Every dropped item is counted and, if a
+ * handler was given, passed to it (e.g. to return pooled objects). The time
+ * delivered items spent in the queue is tracked as well.
+ *
+ * @param <T> type of the queued items
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class SheddingQueue<T> {
+
+   private final Object[] items;
+   private final long[] enqueuedAt;
+   private final ReentrantLock lock = new ReentrantLock();
+   private final Condition notEmpty = lock.newCondition();
+   private final Consumer<? super T> shedHandler;
+   private int head;
+   private int count;
+   private long shedCount;
+   private long delivered;
+   private long totalLatencyNanos;
+   private long maxLatencyNanos;
+   private long offersWhileFull;
+   private volatile OverflowPolicy policy;
+   private volatile int parameter;
+
+   /**
+    * @param capacity  maximum number of queued items
+    * @param policy    what to drop when the queue is full or items are stale
+    * @param parameter N for {@link OverflowPolicy#SAMPLE_EVERY_NTH}, the maximum
+    *                  age in milliseconds for {@link OverflowPolicy#DROP_IF_STALE},
+    *                  ignored otherwise
+    */
+   public SheddingQueue(int capacity, OverflowPolicy policy, int parameter) {
+      this(capacity, policy, parameter, null);
+   }
+
+   /**
+    * @param shedHandler called with every dropped item, may be null
+    */
+   public SheddingQueue(int capacity, OverflowPolicy policy, int parameter, Consumer<? super T> shedHandler) {
+      this.items = new Object[Math.max(1, capacity)];
+      this.enqueuedAt = new long[items.length];
+      this.policy = policy;
+      this.parameter = parameter;
+      this.shedHandler = shedHandler;
+   }
+
+   /**
+    * Changes the policy at runtime. Queued items are kept.
+    */
+   public void setPolicy(OverflowPolicy policy, int parameter) {
+      this.policy = policy;
+      this.parameter = parameter;
+   }
+
+   public OverflowPolicy getPolicy() {
+      return policy;
+   }
+
+   /**
+    * Adds an item, dropping items as the policy requires if the queue is full.
+    * Never blocks.
+    *
+    * @return false if the item itself was dropped
+    */
+   public boolean offer(T item) {
+      lock.lock();
+      try {
+         if (count == items.length) {
+            switch (policy) {
+               case DROP_NEWEST -> {
+                  shed(item);
+                  return false;
+               }
+               case COALESCE_TO_LATEST -> {
+                  while (count > 0) {
+                     shed(removeHead());
+                  }
+               }
+               case SAMPLE_EVERY_NTH -> {
+                  offersWhileFull++;
+                  if (offersWhileFull % Math.max(1, parameter) != 0) {
+                     shed(item);
+                     return false;
+                  }
+                  shed(removeHead());
+               }
+               default -> shed(removeHead());
+            }
+         } else {
+            offersWhileFull = 0;
+         }
+         int tail = (head + count) % items.length;
+         items[tail] = item;
+         enqueuedAt[tail] = System.nanoTime();
+         count++;
+         notEmpty.signal();
+         return true;
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Removes the oldest item that is not stale, waiting up to the timeout for
+    * one to arrive.
+    *
+    * @return the item, or null if the timeout elapsed
+    * @throws InterruptedException if interrupted while waiting
+    */
+   public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+      long nanos = unit.toNanos(timeout);
+      lock.lockInterruptibly();
+      try {
+         while (true) {
+            dropStale();
+            if (count > 0) {
+               return deliverHead();
+            }
+            if (nanos <= 0) {
+               return null;
+            }
+            nanos = notEmpty.awaitNanos(nanos);
+         }
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Moves up to {@code maxElements} queued items that are not stale into the
+    * sink without waiting.
+    *
+    * @return number of items moved
+    */
+   public int drainTo(Collection<? super T> sink, int maxElements) {
+      lock.lock();
+      try {
+         dropStale();
+         int moved = 0;
+         while (count > 0 && moved < maxElements) {
+            sink.add(deliverHead());
+            moved++;
+         }
+         return moved;
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Waits up to the timeout for the first item, then moves whatever else is
+    * already queued, up to {@code maxElements} in total.
+    *
+    * @return number of items moved
+    * @throws InterruptedException if interrupted while waiting
+    */
+   public int drainTo(Collection<? super T> sink, int maxElements, long timeout, TimeUnit unit)
+         throws InterruptedException {
+      T first = poll(timeout, unit);
+      if (first == null) {
+         return 0;
+      }
+      sink.add(first);
+      return 1 + drainTo(sink, maxElements - 1);
+   }
+
+   /**
+    * Drops every queued item without counting it as shed.
+    */
+   public void clear() {
+      lock.lock();
+      try {
+         while (count > 0) {
+            T item = removeHead();
+            if (shedHandler != null) {
+               shedHandler.accept(item);
+            }
+         }
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   public int size() {
+      lock.lock();
+      try {
+         return count;
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   public int capacity() {
+      return items.length;
+   }
+
+   /**
+    * @return number of items dropped by the policy since the queue was created
+    */
+   public long getShedCount() {
+      lock.lock();
+      try {
+         return shedCount;
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * @return how long the delivered items waited in the queue
+    */
+   public Latency getLatency() {
+      lock.lock();
+      try {
+         return new Latency(delivered,
+               delivered == 0 ? 0 : totalLatencyNanos / 1e6 / delivered,
+               maxLatencyNanos / 1e6);
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Queueing latency of the items handed to consumers.
+    *
+    * @param delivered   number of items handed to consumers
+    * @param meanMillis  mean time between enqueue and dequeue
+    * @param maxMillis   longest time between enqueue and dequeue
+    */
+   public record Latency(long delivered, double meanMillis, double maxMillis) {
+   }
+
+   private T deliverHead() {
+      long latency = System.nanoTime() - enqueuedAt[head];
+      delivered++;
+      totalLatencyNanos += latency;
+      maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+      return removeHead();
+   }
+
+   private void dropStale() {
+      if (policy != OverflowPolicy.DROP_IF_STALE) {
+         return;
+      }
+      long oldestAllowed = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(parameter);
+      while (count > 0 && enqueuedAt[head] - oldestAllowed < 0) {
+         shed(removeHead());
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   private T removeHead() {
+      T item = (T) items[head];
+      items[head] = null;
+      head = (head + 1) % items.length;
+      count--;
+      return item;
+   }
+
+   private void shed(T item) {
+      shedCount++;
+      if (shedHandler != null) {
+         shedHandler.accept(item);
+      }
+   }
+}
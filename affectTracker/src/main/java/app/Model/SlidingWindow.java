@@ -0,0 +1,192 @@
+package app.Model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Fixed-memory sliding time window over values between 0 and 1.
+ * <p>
+ * The window is split into a ring of equally sized time buckets. Each bucket
+ * keeps the count, the sum and a histogram of the values added during its time
+ * slice, and the window keeps running totals of all buckets. Adding a value
+ * only touches the current bucket and the totals; buckets that fall out of the
+ * window are subtracted from the totals as time advances. Updates are O(1)
+ * (amortized over the buckets being expired) and memory does not grow with the
+ * number of values.
+ * <p>
+ * Quantiles are approximated from the histogram, so their precision is one
+ * histogram bin. This class is not thread-safe.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class SlidingWindow {
+
+   private final long bucketMillis;
+   private final int bins;
+   private final long[] bucketCounts;
+   private final double[] bucketSums;
+   private final int[][] bucketHistograms;
+   private final int[] histogram;
+   private long count;
+   private double sum;
+   private long currentBucket = Long.MIN_VALUE;
+
+   /**
+    * @param windowMillis length of the window
+    * @param buckets      number of time buckets the window is split into
+    * @param bins         number of histogram bins over [0, 1]
+    */
+   public SlidingWindow(long windowMillis, int buckets, int bins) {
+      this.bucketMillis = Math.max(1, windowMillis / buckets);
+      this.bins = bins;
+      this.bucketCounts = new long[buckets];
+      this.bucketSums = new double[buckets];
+      this.bucketHistograms = new int[buckets][bins];
+      this.histogram = new int[bins];
+   }
+
+   /**
+    * Adds a value observed at the given time. Values outside [0, 1] are clamped
+    * into the first or last histogram bin.
+    */
+   public void add(long nowMillis, double value) {
+      advance(nowMillis);
+      int slot = slot(currentBucket);
+      int bin = bin(value);
+      bucketCounts[slot]++;
+      bucketSums[slot] += value;
+      bucketHistograms[slot][bin]++;
+      count++;
+      sum += value;
+      histogram[bin]++;
+   }
+
+   public long count(long nowMillis) {
+      advance(nowMillis);
+      return count;
+   }
+
+   /**
+    * @return mean of the values in the window, or NaN if it is empty
+    */
+   public double mean(long nowMillis) {
+      advance(nowMillis);
+      return count == 0 ? Double.NaN : sum / count;
+   }
+
+   /**
+    * @param quantile quantile between 0 and 1, e.g. 0.5 for the median
+    * @return approximate quantile of the values in the window, or NaN if it is
+    *         empty
+    */
+   public double quantile(long nowMillis, double quantile) {
+      advance(nowMillis);
+      if (count == 0) {
+         return Double.NaN;
+      }
+      double rank = quantile * count;
+      long seen = 0;
+      for (int bin = 0; bin < bins; bin++) {
+         if (histogram[bin] > 0 && seen + histogram[bin] >= rank) {
+            // interpolate linearly inside the bin
+            double within = (rank - seen) / histogram[bin];
+            return (bin + Math.max(0, within)) / bins;
+         }
+         seen += histogram[bin];
+      }
+      return 1.0;
+   }
+
+   /**
+    * Writes the buckets and the time of the current bucket, see
+    * {@link #readFrom(DataInput)}.
+    */
+   public void writeTo(DataOutput out) throws IOException {
+      out.writeLong(currentBucket);
+      for (int slot = 0; slot < bucketCounts.length; slot++) {
+         out.writeLong(bucketCounts[slot]);
+         if (bucketCounts[slot] == 0) {
+            continue;
+         }
+         out.writeDouble(bucketSums[slot]);
+         for (int bin = 0; bin < bins; bin++) {
+            out.writeInt(bucketHistograms[slot][bin]);
+         }
+      }
+   }
+
+   /**
+    * Replaces the contents with a window written by {@link #writeTo(DataOutput)}
+    * from a window with the same dimensions. Buckets that expired since are
+    * dropped on the next access, as the buckets are kept in wall-clock time.
+    */
+   public void readFrom(DataInput in) throws IOException {
+      currentBucket = in.readLong();
+      count = 0;
+      sum = 0;
+      Arrays.fill(histogram, 0);
+      for (int slot = 0; slot < bucketCounts.length; slot++) {
+         bucketCounts[slot] = in.readLong();
+         bucketSums[slot] = 0;
+         Arrays.fill(bucketHistograms[slot], 0);
+         if (bucketCounts[slot] == 0) {
+            continue;
+         }
+         bucketSums[slot] = in.readDouble();
+         for (int bin = 0; bin < bins; bin++) {
+            bucketHistograms[slot][bin] = in.readInt();
+            histogram[bin] += bucketHistograms[slot][bin];
+         }
+         count += bucketCounts[slot];
+         sum += bucketSums[slot];
+      }
+   }
+
+   /**
+    * Expires every bucket that is no longer part of the window at the given time.
+    */
+   private void advance(long nowMillis) {
+      long bucket = Math.floorDiv(nowMillis, bucketMillis);
+      if (currentBucket == Long.MIN_VALUE) {
+         currentBucket = bucket;
+         return;
+      }
+      if (bucket <= currentBucket) {
+         return;
+      }
+      long expired = Math.min(bucket - currentBucket, bucketCounts.length);
+      for (long i = 1; i <= expired; i++) {
+         clear(slot(currentBucket + i));
+      }
+      currentBucket = bucket;
+   }
+
+   private void clear(int slot) {
+      if (bucketCounts[slot] == 0) {
+         return;
+      }
+      count -= bucketCounts[slot];
+      sum -= bucketSums[slot];
+      int[] bucketHistogram = bucketHistograms[slot];
+      for (int bin = 0; bin < bins; bin++) {
+         histogram[bin] -= bucketHistogram[bin];
+         bucketHistogram[bin] = 0;
+      }
+      bucketCounts[slot] = 0;
+      bucketSums[slot] = 0;
+   }
+
+   private int slot(long bucket) {
+      return (int) Math.floorMod(bucket, (long) bucketCounts.length);
+   }
+
+   private int bin(double value) {
+      int bin = (int) (value * bins);
+      return Math.max(0, Math.min(bins - 1, bin));
+   }
+}
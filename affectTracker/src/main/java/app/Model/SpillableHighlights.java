@@ -0,0 +1,105 @@
+package app.Model;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+
+import app.Data.HighlightColumns;
+import app.Data.HighlightSequence;
+
+/**
+ * A committed highlight collection that can be moved out of the heap. It is
+ * read-only: committed collections are never changed once stored.
+ * <p>
+ * While resident the highlights are kept in {@link HighlightColumns}; after
+ * {@link #spill} they are read from the mapped records of a
+ * {@link HighlightSpill} segment when accessed. Readers on other threads, such
+ * as the painting thread, may read the collection while it is being spilled.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+class SpillableHighlights implements HighlightSequence {
+
+   private final int size;
+   private final Rectangle bounds;
+   private volatile HighlightSequence resident;
+   private volatile HighlightSpill.Spilled spilled;
+
+   /**
+    * @param highlights the highlights, owned by this collection from now on
+    */
+   SpillableHighlights(HighlightColumns highlights) {
+      this.resident = highlights;
+      this.size = highlights.size();
+      this.bounds = highlights.bounds();
+   }
+
+   @Override
+   public int size() {
+      return size;
+   }
+
+   @Override
+   public int x(int index) {
+      return current().x(index);
+   }
+
+   @Override
+   public int y(int index) {
+      return current().y(index);
+   }
+
+   @Override
+   public int length(int index) {
+      return current().length(index);
+   }
+
+   @Override
+   public int emotion(int index) {
+      return current().emotion(index);
+   }
+
+   /**
+    * @return the bounds computed when the collection was committed, so culling
+    *         a spilled collection does not page it in
+    */
+   @Override
+   public Rectangle bounds() {
+      return new Rectangle(bounds);
+   }
+
+   boolean isResident() {
+      return resident != null;
+   }
+
+   /**
+    * Writes the highlights to the spill and drops them from the heap.
+    *
+    * @throws IOException if they could not be written; they stay resident
+    */
+   void spill(HighlightSpill spill) throws IOException {
+      HighlightSequence highlights = resident;
+      if (highlights == null) {
+         return;
+      }
+      spilled = spill.spill(highlights);
+      resident = null;
+   }
+
+   /**
+    * Gives up the spilled records once the collection is dropped.
+    */
+   void release() {
+      HighlightSpill.Spilled records = spilled;
+      if (records != null) {
+         records.release();
+      }
+   }
+
+   private HighlightSequence current() {
+      HighlightSequence highlights = resident;
+      return highlights != null ? highlights : spilled;
+   }
+}
@@ -0,0 +1,228 @@
+package app.Model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import app.Data.EmotionFrequencies;
+import app.Data.HighlightColumns;
+import app.Data.HighlightSequence;
+
+/**
+ * Periodically saves the state of a {@link Blackboard} session to a compact
+ * binary file and restores it at startup, so a restart or crash does not lose
+ * the highlight history, the emotion counts or the analytics windows.
+ * <p>
+ * Snapshots are taken on a thread of their own. The committed highlight
+ * collections are never modified once added, so capturing them only copies
+ * the references of a {@link HighlightRing} snapshot; the counts are an immutable {@link EmotionFrequencies} snapshot
+ * and the analytics are serialized under their own lock. Encoding and writing
+ * then happen off the processing threads. A snapshot is only written when the
+ * state changed since the last one, into a temporary file that atomically
+ * replaces the previous snapshot, so a crash while writing leaves the last
+ * complete snapshot in place. The highlights that are not committed yet are
+ * not saved.
+ * <p>
+ * File format, big-endian: magic, version, save time, emotion counts, highlight
+ * collections (x, y, length and emotion of every highlight), then the
+ * analytics state.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class StateSnapshotter implements Runnable, AutoCloseable {
+
+   public static final String SNAPSHOT_OPTION = "--snapshot=";
+   public static final long DEFAULT_INTERVAL_MS = 5000;
+   private static final Logger LOGGER = LoggerFactory.getLogger(StateSnapshotter.class);
+   private static final int MAGIC = 0x41465354; // "AFST"
+   private static final int VERSION = 2;
+
+   private final Blackboard blackboard;
+   private final Path file;
+   private final long intervalMs;
+   private final CountDownLatch stopped = new CountDownLatch(1);
+   private Thread thread;
+   // what the last snapshot was taken of, to skip unchanged state
+   private EmotionFrequencies savedFrequencies;
+   private long savedGeneration = -1;
+   private long savedAnalyticsCount = -1;
+
+   /**
+    * @param blackboard the session to save
+    * @param file       the snapshot file
+    * @param intervalMs time between two snapshots
+    */
+   public StateSnapshotter(Blackboard blackboard, Path file, long intervalMs) {
+      this.blackboard = blackboard;
+      this.file = file;
+      this.intervalMs = intervalMs;
+   }
+
+   /**
+    * Reads the snapshot file, if there is one, into the session. Meant to be
+    * called before the processors start.
+    *
+    * @return whether a snapshot was restored
+    */
+   public boolean restore() {
+      if (!Files.isRegularFile(file)) {
+         return false;
+      }
+      long start = System.nanoTime();
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+         if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            LOGGER.warn("{} is not a snapshot of this version, ignoring it", file);
+            return false;
+         }
+         long savedAt = in.readLong();
+         long[] counts = new long[in.readInt()];
+         for (int i = 0; i < counts.length; i++) {
+            counts[i] = in.readLong();
+         }
+         int collectionCount = in.readInt();
+         List<HighlightColumns> collections = new ArrayList<>(collectionCount);
+         for (int i = 0; i < collectionCount; i++) {
+            int size = in.readInt();
+            HighlightColumns collection = new HighlightColumns();
+            for (int j = 0; j < size; j++) {
+               collection.add(in.readInt(), in.readInt(), in.readInt(), in.readByte());
+            }
+            collections.add(collection);
+         }
+         blackboard.readAnalytics(in);
+
+         blackboard.setFrequencySnapshot(new EmotionFrequencies(counts));
+         blackboard.clearHighlightCollections();
+         for (HighlightColumns collection : collections) {
+            blackboard.addHighlightCollection(collection);
+         }
+         LOGGER.info("Restored {} highlight collections and {} emotion counts saved {} s ago in {} ms",
+               collectionCount, blackboard.getFrequencySnapshot().total(),
+               (System.currentTimeMillis() - savedAt) / 1000, (System.nanoTime() - start) / 1_000_000);
+         return true;
+      } catch (IOException e) {
+         LOGGER.warn("Unable to restore snapshot " + file + ": " + e.getMessage());
+         return false;
+      }
+   }
+
+   /**
+    * Starts taking snapshots periodically.
+    */
+   public synchronized void start() {
+      if (thread == null) {
+         thread = TaskExecutors.platformThreads("snapshots").newThread(this);
+         thread.start();
+      }
+   }
+
+   @Override
+   public void run() {
+      try {
+         while (!stopped.await(intervalMs, TimeUnit.MILLISECONDS)) {
+            snapshot();
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   /**
+    * Stops the periodic snapshots and takes a last one.
+    */
+   @Override
+   public void close() {
+      stopped.countDown();
+      Thread running;
+      synchronized (this) {
+         running = thread;
+      }
+      if (running != null) {
+         try {
+            running.join(intervalMs);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }
+      snapshot();
+   }
+
+   /**
+    * Writes a snapshot if the state changed since the last one.
+    */
+   public synchronized void snapshot() {
+      EmotionFrequencies frequencies = blackboard.getFrequencySnapshot();
+      HighlightRing.Snapshot collections = blackboard.getHighlightCollections().snapshot();
+      long analyticsCount = blackboard.getAnalyticsRecordedCount();
+      if (frequencies == savedFrequencies && collections.generation() == savedGeneration
+            && analyticsCount == savedAnalyticsCount) {
+         return;
+      }
+      try {
+         ByteArrayOutputStream analytics = new ByteArrayOutputStream();
+         blackboard.writeAnalytics(new DataOutputStream(analytics));
+         write(frequencies, collections.collections(), analytics);
+         savedFrequencies = frequencies;
+         savedGeneration = collections.generation();
+         savedAnalyticsCount = analyticsCount;
+      } catch (IOException e) {
+         LOGGER.warn("Unable to write snapshot " + file + ": " + e.getMessage());
+      }
+   }
+
+   private void write(EmotionFrequencies frequencies, List<HighlightSequence> collections,
+         ByteArrayOutputStream analytics) throws IOException {
+      Path absolute = file.toAbsolutePath();
+      Path temporary = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+         out.writeInt(MAGIC);
+         out.writeInt(VERSION);
+         out.writeLong(System.currentTimeMillis());
+         out.writeInt(frequencies.size());
+         for (int i = 0; i < frequencies.size(); i++) {
+            out.writeLong(frequencies.count(i));
+         }
+         out.writeInt(collections.size());
+         for (HighlightSequence collection : collections) {
+            out.writeInt(collection.size());
+            for (int i = 0; i < collection.size(); i++) {
+               out.writeInt(collection.x(i));
+               out.writeInt(collection.y(i));
+               out.writeInt(collection.length(i));
+               out.writeByte(collection.emotion(i));
+            }
+         }
+         analytics.writeTo(out);
+      }
+      Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+   }
+
+   /**
+    * @param args command-line arguments
+    * @return the file given with {@value #SNAPSHOT_OPTION}, or null
+    */
+   public static Path fileFrom(String[] args) {
+      for (String arg : args) {
+         if (arg.startsWith(SNAPSHOT_OPTION)) {
+            return Path.of(arg.substring(SNAPSHOT_OPTION.length()));
+         }
+      }
+      return null;
+   }
+}
@@ -0,0 +1,78 @@
+package app.Model;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Central place where the application's long-lived tasks get their threads.
+ * <p>
+ * Tasks that spend their life blocked (queue consumers, MQTT clients waiting
+ * for messages, publishers waiting for mouse events) run on {@link #io()}. On
+ * runtimes with virtual threads every such task gets a cheap virtual thread;
+ * otherwise they share a cached pool of daemon platform threads, and a warning
+ * says why. CPU-bound
+ * stages keep a small number of platform threads, see
+ * {@link ShardedProcessingStage} and {@link #platformThreads(String)}.
+ * <p>
+ * Tasks that belong to one Start/Stop cycle are forked in a {@link TaskGroup},
+ * which stops and joins all of them together.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public final class TaskExecutors {
+
+   private static final Logger LOGGER = LoggerFactory.getLogger(TaskExecutors.class);
+   private static final ExecutorService IO = createIoExecutor();
+
+   private TaskExecutors() {
+   }
+
+   /**
+    * @return the shared executor for blocking tasks
+    */
+   public static ExecutorService io() {
+      return IO;
+   }
+
+   /**
+    * Creates a factory for the daemon platform threads of a CPU-bound stage.
+    *
+    * @param name prefix of the thread names
+    * @return the thread factory
+    */
+   public static ThreadFactory platformThreads(String name) {
+      AtomicInteger count = new AtomicInteger();
+      return task -> {
+         Thread thread = new Thread(task, name + "-" + count.getAndIncrement());
+         thread.setDaemon(true);
+         return thread;
+      };
+   }
+
+   private static ExecutorService createIoExecutor() {
+      try {
+         // looked up reflectively: virtual threads are a preview feature before Java 21,
+         // so on the Java 20 target they need --enable-preview at run time
+         Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+         ExecutorService executor = (ExecutorService) factory.invoke(null);
+         LOGGER.info("Blocking tasks run on virtual threads");
+         return executor;
+      } catch (ReflectiveOperationException | RuntimeException e) {
+         Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+         LOGGER.warn("Virtual threads unavailable on Java {} ({}), blocking tasks fall back to platform "
+               + "threads; run on Java 21 or with --enable-preview on Java 20 to use them",
+               Runtime.version().feature(), cause.toString());
+         return Executors.newCachedThreadPool(platformThreads("io"));
+      }
+   }
+}
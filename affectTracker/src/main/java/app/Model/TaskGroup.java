@@ -0,0 +1,150 @@
+package app.Model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A set of tasks that share a lifecycle, such as the clients started by one
+ * press of Start. Tasks are forked on {@link TaskExecutors#io()}. Closing the
+ * group asks every task to stop, through its stop action or else by
+ * interrupting it, and waits for all of them to finish, so no thread outlives
+ * its Start/Stop cycle.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class TaskGroup implements AutoCloseable {
+
+   private static final Logger LOGGER = LoggerFactory.getLogger(TaskGroup.class);
+   private static final long JOIN_TIMEOUT_MS = 2000;
+
+   private final String name;
+   private final List<Member> members = new ArrayList<>();
+   private boolean closed = false;
+
+   public TaskGroup(String name) {
+      this.name = name;
+   }
+
+   /**
+    * Starts a task in this group.
+    *
+    * @param task       the task
+    * @param stopAction asks the task to return on its own; if null the task is
+    *                   interrupted when the group closes
+    * @throws IllegalStateException if the group is already closed
+    */
+   public synchronized void fork(Runnable task, Runnable stopAction) {
+      if (closed) {
+         throw new IllegalStateException(name + " is closed");
+      }
+      Member member = new Member(task, stopAction);
+      members.add(member);
+      TaskExecutors.io().execute(member);
+   }
+
+   public void fork(Runnable task) {
+      fork(task, null);
+   }
+
+   /**
+    * Stops every task and waits for all of them to finish. Tasks still running
+    * after the join timeout are interrupted and left behind.
+    */
+   @Override
+   public void close() {
+      List<Member> running;
+      synchronized (this) {
+         if (closed) {
+            return;
+         }
+         closed = true;
+         running = List.copyOf(members);
+      }
+      long start = System.nanoTime();
+      for (Member member : running) {
+         member.stop();
+      }
+      try {
+         for (Member member : running) {
+            if (member.isCurrentThread()) {
+               // closed from one of its own tasks, which cannot wait for itself
+               continue;
+            }
+            long remaining = JOIN_TIMEOUT_MS - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (!member.done.await(Math.max(remaining, 0), TimeUnit.MILLISECONDS)) {
+               member.interrupt();
+               LOGGER.warn("{}: a task did not stop within {} ms", name, JOIN_TIMEOUT_MS);
+            }
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+      LOGGER.info("{} stopped {} tasks in {} ms", name, running.size(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+   }
+
+   private static final class Member implements Runnable {
+      private final Runnable task;
+      private final Runnable stopAction;
+      private final CountDownLatch done = new CountDownLatch(1);
+      private Thread thread;
+      private boolean stopped;
+
+      Member(Runnable task, Runnable stopAction) {
+         this.task = task;
+         this.stopAction = stopAction;
+      }
+
+      @Override
+      public void run() {
+         synchronized (this) {
+            if (stopped) {
+               done.countDown();
+               return;
+            }
+            thread = Thread.currentThread();
+         }
+         try {
+            task.run();
+         } catch (RuntimeException e) {
+            LOGGER.warn("Task failed: {}", e.toString());
+         } finally {
+            synchronized (this) {
+               thread = null;
+            }
+            done.countDown();
+         }
+      }
+
+      void stop() {
+         if (stopAction == null) {
+            interrupt();
+            return;
+         }
+         synchronized (this) {
+            // a task that has not started yet is skipped
+            stopped = true;
+         }
+         stopAction.run();
+      }
+
+      synchronized boolean isCurrentThread() {
+         return thread == Thread.currentThread();
+      }
+
+      synchronized void interrupt() {
+         stopped = true;
+         if (thread != null) {
+            thread.interrupt();
+         }
+      }
+   }
+}
@@ -0,0 +1,52 @@
+package app.Model;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link EmotionScorer} using the {@code jdk.incubator.vector} API. Each vector
+ * holds one emotion column for as many samples as fit in a register, so the
+ * validation and the running maximum of a whole group of samples are updated
+ * with a handful of instructions per emotion.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+class VectorEmotionScorer implements EmotionScorer {
+
+   private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+   private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class, FLOATS.vectorShape());
+
+   @Override
+   public void score(float[] scores, int stride, int count, int[] prominent, boolean[] valid) {
+      int bound = FLOATS.loopBound(count);
+      int i = 0;
+      for (; i < bound; i += FLOATS.length()) {
+         FloatVector max = FloatVector.fromArray(FLOATS, scores, i);
+         IntVector maxIndex = IntVector.zero(INTS);
+         VectorMask<Float> allValid = validMask(max);
+         for (int e = 1; e < EMOTION_COUNT; e++) {
+            FloatVector column = FloatVector.fromArray(FLOATS, scores, e * stride + i);
+            allValid = allValid.and(validMask(column));
+            VectorMask<Float> greater = column.compare(VectorOperators.GT, max);
+            max = max.blend(column, greater);
+            maxIndex = maxIndex.blend(e, greater.cast(INTS));
+         }
+         VectorMask<Integer> inactive = max.compare(VectorOperators.EQ, -1f).cast(INTS);
+         maxIndex.blend(NO_EMOTION, inactive).intoArray(prominent, i);
+         allValid.intoArray(valid, i);
+      }
+      ScalarEmotionScorer.scoreRange(scores, stride, i, count, prominent, valid);
+   }
+
+   private static VectorMask<Float> validMask(FloatVector v) {
+      return v.compare(VectorOperators.GE, 0f)
+            .and(v.compare(VectorOperators.LE, 1f))
+            .or(v.compare(VectorOperators.EQ, -1f));
+   }
+}
@@ -1,40 +1,43 @@
 package app.Model;
 
 import app.Data.Emotion;
-import app.Data.Highlight;
+import app.Data.HighlightColumns;
 import app.Data.ProcessedDataObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.awt.*;
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
- * The {@code ViewDataProcessor} is alerted of new processed data available in
- * the {@link Blackboard}, converts it into the appropriate {@link Highlight} data
- * for visualization.
+ * The {@code ViewDataProcessor} takes processed data from the queue in the
+ * {@link Blackboard} and converts it into highlights, stored in
+ * {@link HighlightColumns}, for visualization.
  * <p>
- * This class implements {@link PropertyChangeListener} and is intended to be
- * run as a separate thread.
+ * This class implements {@link Runnable} and is intended to be run as a
+ * separate thread, so view work never runs on the threads producing the
+ * processed data.
  * It handles the consolidation of circles based on proximity and dynamically
  * updates the display.
  * <p>
  * The processor performs the following tasks:
  * <ul>
  * <li>Handles incoming processed data and converts it into highlights</li>
- * <li>Consolidates highlights if they are within a certain threshold</li>
+ * <li>Consolidates highlights if they are within a certain threshold, found
+ * through a {@link HighlightGrid} instead of scanning the list</li>
+ * <li>Drops the oldest current highlights when they exceed their share of the
+ * session's memory budget</li>
  * <li>Updates the display by managing highlight colors and frequency data</li>
- * <li>Handles synchronization and property changes from the Blackboard</li>
+ * <li>Publishes every sample to the session's {@link ProcessingPipeline},
+ * whose stages (e.g. the streaming analytics) run on their own threads</li>
+ * <li>Describes its changes as {@link ViewDeltaCodec} deltas when they are
+ * published</li>
+ * <li>Consumes the processed data queue of the Blackboard in order</li>
+ * <li>Reports the processing latency of the first minute of data</li>
  * </ul>
  *
  * Code Metrics:
  * - Number of Classes: 1 (ViewDataProcessor)
  * - Number of Methods: 6
- * (run, cleanUpThread, handleProcessedData, isWithinThreshold, updateFrequency,
- * propertyChange)
+ * (run, cleanUpThread, handleProcessedData, findConsolidationTarget, updateFrequency)
  * - Lines of Code (LOC): 106 (including comments and blank lines)
  * - Cyclomatic Complexity: 5
  * (based on method complexity: simple methods, plus handleProcessedData and
@@ -47,31 +50,64 @@ import java.util.List;
  * @author Xiuyuan Qiu
  * @version 1.0
  */
-public class ViewDataProcessor implements Runnable, PropertyChangeListener {
+public class ViewDataProcessor implements Runnable {
    private static final String THREAD_NAME = "ViewLogic";
    private static final Logger LOGGER = LoggerFactory.getLogger(ViewDataProcessor.class);
+   private final Blackboard blackboard;
+   private final LatencyRecorder latency;
+   // spatial index of the current highlights, for consolidation
+   private final HighlightIndex index = new HighlightIndex();
+   private volatile boolean running = true;
+
+   public ViewDataProcessor() {
+      this(Blackboard.getInstance());
+   }
 
    /**
-    * Constructor for the {@code ViewDataProcessor}.
-    * Registers this object as a listener for processed data changes on the
-    * Blackboard.
+    * @param blackboard the session whose processed data is consumed; the
+    *                   processor stops when the session is closed
     */
-   public ViewDataProcessor() {
-      super();
-      Blackboard.getInstance().addPropertyChangeListener(Blackboard.PROPERTY_NAME_PROCESSED_DATA, this);
+   public ViewDataProcessor(Blackboard blackboard) {
+      this(blackboard, new LatencyRecorder("Session " + blackboard.getSessionId()));
    }
 
    /**
-    * Runs the ViewDataProcessor. Keeps the thread alive and idle while waiting for
-    * new data.
+    * @param latency records the processing latency of the first data
+    */
+   ViewDataProcessor(Blackboard blackboard, LatencyRecorder latency) {
+      this.blackboard = blackboard;
+      this.latency = latency;
+      blackboard.addPropertyChangeListener(Blackboard.CLOSED, evt -> cleanUpThread());
+   }
+
+   /**
+    * @return the latency percentiles of the first minute of data, or null
+    *         while it has not passed
+    */
+   public LatencyRecorder.Report getLatencyReport() {
+      return latency.getReport();
+   }
+
+   /**
+    * Runs the ViewDataProcessor. Takes processed data from the Blackboard queue
+    * until the thread is cleaned up.
     * This method is executed as a separate thread.
     */
    @Override
    public void run() {
       try {
-         // Keep the thread alive and idle while waiting for new data
-         synchronized (this) {
-            wait();
+         while (running) {
+            ProcessedDataObject data = blackboard.getFromProcessedDataObjectQueue();
+            if (data != null) {
+               LOGGER.debug("Received ProcessedDataObject: {}", data);
+               try {
+                  handleProcessedData(data);
+                  latency.record(data.timestamp(), System.nanoTime());
+                  blackboard.getPipeline().publish(data);
+               } finally {
+                  data.recycle();
+               }
+            }
          }
       } catch (InterruptedException e) {
          LOGGER.error(THREAD_NAME + " thread was interrupted", e);
@@ -84,115 +120,115 @@ public class ViewDataProcessor implements Runnable, PropertyChangeListener {
    }
 
    /**
-    * Cleans up resources by removing this object as a listener from the
-    * Blackboard.
+    * Stops taking data from the Blackboard once the current item is handled.
     */
    public void cleanUpThread() {
-      Blackboard.getInstance().removePropertyChangeListener(
-            Blackboard.PROPERTY_NAME_PROCESSED_DATA, this);
+      running = false;
    }
 
    /**
     * Handles incoming processed data, updates the highlights, and updates
-    * frequency data.
+    * frequency data. Package-private so checks can drive it without the queue.
     *
     * @param data The {@link ProcessedDataObject} containing the processed data.
     * @throws InterruptedException If the thread is interrupted while handling the
     *                              data.
     */
-   private void handleProcessedData(ProcessedDataObject data) throws InterruptedException {
-      List<Highlight> highlightList = Blackboard.getInstance().getHighlightList();
-      Color color = data.prominentEmotion().getColor();
+   void handleProcessedData(ProcessedDataObject data) throws InterruptedException {
+      HighlightColumns highlightList = blackboard.getHighlightList();
+      boolean publishing = blackboard.isPublishingViewDeltas();
+      Emotion emotion = data.prominentEmotion();
       if (data.xCoord() == -1 || data.yCoord() == -1) {
          // emotion data without eye tracking, update colors
          LOGGER.info("Missing eye tracking data, updating highlight colors");
-         Blackboard.getInstance().updateHighlightColors(color);
-         Blackboard.getInstance().addHighlightCollection(highlightList);
+         if (publishing) {
+            blackboard.publishViewDelta(ViewDeltaCodec.recolored(data.prominentEmotion()));
+            blackboard.publishViewDelta(ViewDeltaCodec.committed());
+         }
+         blackboard.updateHighlightColors(emotion);
+         blackboard.addHighlightCollection(highlightList);
+         index.invalidate();
          updateFrequency(data.prominentEmotion());
-         Blackboard.getInstance().setHighlightList(highlightList);
+         blackboard.highlightListChanged();
          return;
       }
 
-      Highlight newHighlight = new Highlight(data.xCoord(), data.yCoord(), color,
-            Blackboard.getInstance().getHighlightLength());
-      highlightList.add(newHighlight);
+      int length = blackboard.getHighlightLength();
+      highlightList.add(data.xCoord(), data.yCoord(), length, emotion.getValue());
+      if (publishing) {
+         blackboard.publishViewDelta(ViewDeltaCodec.added(data.xCoord(), data.yCoord(), length, emotion));
+      }
 
-      // Consolidate highlights if they are within a specified threshold
-      for (Highlight highlight : highlightList) {
-         if (isWithinThreshold(highlight, newHighlight)) {
-            highlight.increaseLength(50); // Consolidate by increasing the length
-            break;
+      // Consolidate with the first highlight within the threshold, which may be
+      // the new highlight itself
+      int i = findConsolidationTarget(highlightList, data.xCoord(), data.yCoord());
+      if (i >= 0) {
+         int oldX = highlightList.x(i);
+         highlightList.grow(i, 50); // Consolidate by increasing the length
+         index.moved(i, oldX, highlightList.y(i), highlightList.x(i));
+         if (publishing) {
+            blackboard.publishViewDelta(ViewDeltaCodec.grown(i, 50));
          }
       }
 
-      if (data.prominentEmotion() != Emotion.NONE) {
+      trimToBudget(highlightList, publishing);
+
+      if (emotion != Emotion.NONE) {
          LOGGER.info("Updating highlight colors");
-         Blackboard.getInstance().updateHighlightColors(color);
-         Blackboard.getInstance().addHighlightCollection(highlightList);
+         if (publishing) {
+            blackboard.publishViewDelta(ViewDeltaCodec.recolored(data.prominentEmotion()));
+            blackboard.publishViewDelta(ViewDeltaCodec.committed());
+         }
+         blackboard.updateHighlightColors(emotion);
+         blackboard.addHighlightCollection(highlightList);
+         index.invalidate();
          updateFrequency(data.prominentEmotion());
       }
 
-      Blackboard.getInstance().setHighlightList(highlightList);
+      blackboard.highlightListChanged();
    }
 
    /**
-    * Determines whether two highlights are within a threshold distance of each
-    * other.
-    *
-    * @param existing     The existing highlight.
-    * @param newHighlight The new highlight to compare.
-    * @return True if the highlights are within the threshold distance; otherwise,
-    *         false.
+    * Drops the oldest current highlights once there are more than the memory
+    * budget allows, e.g. when no emotion data commits them. A quarter of the
+    * list is dropped at once, so the list is not shifted for every sample.
     */
-   private boolean isWithinThreshold(Highlight existing, Highlight newHighlight) {
-      return Math.abs(existing.getX() - newHighlight.getX()) <= Blackboard.getInstance().getThresholdLength() &&
-            Math.abs(existing.getY() - newHighlight.getY()) <= Blackboard.getInstance().getThresholdLength();
+   private void trimToBudget(HighlightColumns highlightList, boolean publishing) {
+      int max = blackboard.getMaxPendingHighlights();
+      if (highlightList.size() <= max) {
+         return;
+      }
+      int count = Math.min(highlightList.size(), highlightList.size() - max + max / 4);
+      highlightList.removeFirst(count);
+      index.invalidate();
+      LOGGER.warn("Dropped the {} oldest uncommitted highlights to stay within the memory budget", count);
+      if (publishing) {
+         blackboard.publishViewDelta(ViewDeltaCodec.trimmed(count));
+      }
    }
 
    /**
-    * Updates the frequency of emotions based on the processed data.
-    * This method updates the count of each emotion and recalculates the
-    * percentage.
+    * Finds the first highlight, in list order, that is within the threshold
+    * distance of the new one on both axes, through the {@link HighlightIndex}.
     *
-    * @param emotion The emotion whose frequency is being updated.
-    * @throws InterruptedException If the thread is interrupted while updating the
-    *                              frequency.
+    * @param highlightList the current highlights, ending with the new one
+    * @param x             x coordinate of the new highlight
+    * @param y             y coordinate of the new highlight
+    * @return the position of the highlight, or -1 if there is none
     */
-   private void updateFrequency(Emotion emotion) throws InterruptedException {
-      int index = emotion.getValue();
-      Blackboard.getInstance().incrementEmotionCount(index);
-
-      List<String> frequencies = new ArrayList<>();
-      List<Integer> emotionCounts = Blackboard.getInstance().getEmotionCounts();
-      int totalProcessedEmotions = Blackboard.getInstance().getProcessedEmotions();
-      for (int count : emotionCounts) {
-         int percentage = (int) ((double) count / totalProcessedEmotions * 100);
-         frequencies.add(percentage + "%");
-      }
-      Blackboard.getInstance().setFrequencies(frequencies);
+   private int findConsolidationTarget(HighlightColumns highlightList, int x, int y) {
+      return index.firstWithin(highlightList, x, y, blackboard.getThresholdLength());
    }
 
    /**
-    * Handles property change events triggered by updates in the Blackboard.
-    * This method is called whenever processed data is available.
+    * Counts the emotion in the frequency statistics of the Blackboard. The
+    * percentages are only formatted by the view when it displays them.
     *
-    * @param evt The property change event containing the new processed data.
+    * @param emotion The emotion whose frequency is being updated.
     */
-   @Override
-   public void propertyChange(PropertyChangeEvent evt) {
-      if (Blackboard.PROPERTY_NAME_PROCESSED_DATA.equals(evt.getPropertyName())) {
-         ProcessedDataObject data = (ProcessedDataObject) evt.getNewValue();
-         if (data == null) {
-            LOGGER.warn("Received null ProcessedDataObject");
-            return;
-         }
-         LOGGER.info("Received ProcessedDataObject: " + data);
-         try {
-            handleProcessedData(data);
-         } catch (InterruptedException e) {
-            LOGGER.error("Error handling processed data", e);
-            Thread.currentThread().interrupt();
-         }
+   private void updateFrequency(Emotion emotion) {
+      if (emotion != Emotion.NONE) {
+         blackboard.incrementEmotionCount(emotion.getValue());
       }
    }
 }
@@ -0,0 +1,131 @@
+package app.Model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import app.Data.Emotion;
+import app.Data.EmotionFrequencies;
+import app.Data.HighlightColumns;
+
+/**
+ * Compact text encoding of the changes the {@link ViewDataProcessor} makes to
+ * the view state, so a processing node can publish them and render-only clients
+ * can replay them without processing the raw data themselves.
+ * <p>
+ * A message holds one or more deltas separated by {@code ';'}. Each delta is a
+ * letter followed by space separated integers:
+ * <ul>
+ * <li>{@code A x y length emotion}: a highlight was added to the current list,
+ * colored by the emotion's value (-1 for none)</li>
+ * <li>{@code G index increment}: the highlight at the index grew</li>
+ * <li>{@code C emotion}: the current highlights were recolored</li>
+ * <li>{@code K}: the current highlights were stored as a collection</li>
+ * <li>{@code T count}: the oldest current highlights were dropped to stay
+ * within the memory budget</li>
+ * <li>{@code F c0,c1,...}: the emotion frequency counts</li>
+ * </ul>
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public final class ViewDeltaCodec {
+
+   public static final char DELTA_SEPARATOR = ';';
+   private static final Logger LOGGER = LoggerFactory.getLogger(ViewDeltaCodec.class);
+
+   private ViewDeltaCodec() {
+   }
+
+   public static String added(int x, int y, int length, Emotion emotion) {
+      return "A " + x + " " + y + " " + length + " " + emotion.getValue();
+   }
+
+   public static String grown(int index, int increment) {
+      return "G " + index + " " + increment;
+   }
+
+   public static String recolored(Emotion emotion) {
+      return "C " + emotion.getValue();
+   }
+
+   public static String committed() {
+      return "K";
+   }
+
+   public static String trimmed(int count) {
+      return "T " + count;
+   }
+
+   public static String frequencies(EmotionFrequencies frequencies) {
+      StringBuilder delta = new StringBuilder("F ");
+      for (int i = 0; i < frequencies.size(); i++) {
+         delta.append(i == 0 ? "" : ",").append(frequencies.count(i));
+      }
+      return delta.toString();
+   }
+
+   /**
+    * Replays the deltas of a message on a Blackboard. Listeners are notified as
+    * if the changes had been made by a local {@link ViewDataProcessor}.
+    *
+    * @param message    one or more deltas
+    * @param blackboard the session to update
+    */
+   public static void apply(String message, Blackboard blackboard) {
+      for (String delta : message.split(String.valueOf(DELTA_SEPARATOR))) {
+         try {
+            applyDelta(delta.trim(), blackboard);
+         } catch (RuntimeException e) {
+            LOGGER.warn("Invalid view delta \"" + delta + "\": " + e);
+         }
+      }
+   }
+
+   private static void applyDelta(String delta, Blackboard blackboard) {
+      if (delta.isEmpty()) {
+         return;
+      }
+      String[] fields = delta.split(" ");
+      HighlightColumns highlightList = blackboard.getHighlightList();
+      switch (fields[0]) {
+         case "A" -> {
+            highlightList.add(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                  Integer.parseInt(fields[3]), emotion(fields[4]).getValue());
+            blackboard.highlightListChanged();
+         }
+         case "G" -> {
+            int index = Integer.parseInt(fields[1]);
+            if (index < 0 || index >= highlightList.size()) {
+               throw new IndexOutOfBoundsException(index);
+            }
+            highlightList.grow(index, Integer.parseInt(fields[2]));
+            blackboard.highlightListChanged();
+         }
+         case "C" -> blackboard.updateHighlightColors(emotion(fields[1]));
+         case "K" -> blackboard.addHighlightCollection(highlightList);
+         case "T" -> {
+            highlightList.removeFirst(Integer.parseInt(fields[1]));
+            blackboard.highlightListChanged();
+         }
+         case "F" -> {
+            String[] values = fields[1].split(",");
+            long[] counts = new long[values.length];
+            for (int i = 0; i < counts.length; i++) {
+               counts[i] = Long.parseLong(values[i]);
+            }
+            blackboard.setFrequencySnapshot(new EmotionFrequencies(counts));
+         }
+         default -> throw new IllegalArgumentException("unknown delta type " + fields[0]);
+      }
+   }
+
+   private static Emotion emotion(String value) {
+      Emotion emotion = Emotion.getByValue(Integer.parseInt(value));
+      if (emotion == null) {
+         throw new IllegalArgumentException("unknown emotion " + value);
+      }
+      return emotion;
+   }
+}
@@ -5,13 +5,15 @@ import java.awt.Font;
 import java.awt.GridLayout;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.BoxLayout;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 import javax.swing.border.MatteBorder;
 
+import app.Data.EmotionFrequencies;
 import app.Model.Blackboard;
 
 /**
@@ -23,7 +25,9 @@ import app.Model.Blackboard;
  * Each label is paired with a colored square representing the emotion.
  * <p>
  * This panel listens to property change events and updates the frequency values
- * displayed next to each emotion label.
+ * displayed next to each emotion label. The events may arrive on any thread;
+ * the percentages are formatted from the latest {@link EmotionFrequencies}
+ * snapshot on the event dispatch thread, at most once per pending repaint.
  *
  * Code Metrics:
  * - Number of Classes: 1 (ColorKeyPanel)
@@ -43,6 +47,9 @@ import app.Model.Blackboard;
 public class ColorKeyPanel extends JPanel implements PropertyChangeListener {
 
    private JLabel[] frequencyLabels = new JLabel[6]; // Array to hold frequency labels for each emotion
+   private final AtomicBoolean updatePending = new AtomicBoolean();
+   private EmotionFrequencies displayedFrequencies = EmotionFrequencies.EMPTY;
+   private final Blackboard blackboard;
    private static final String[] EMOTIONS = {
          "Attention", "Engagement", "Excitement", "Stress", "Relaxation", "Interest"
    };
@@ -57,6 +64,14 @@ public class ColorKeyPanel extends JPanel implements PropertyChangeListener {
     * the Blackboard.
     */
    public ColorKeyPanel() {
+      this(Blackboard.getInstance());
+   }
+
+   /**
+    * @param blackboard the session whose emotion frequencies are shown
+    */
+   public ColorKeyPanel(Blackboard blackboard) {
+      this.blackboard = blackboard;
       setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
       setBorder(new MatteBorder(3, 1, 3, 3, Color.BLACK));
 
@@ -66,7 +81,7 @@ public class ColorKeyPanel extends JPanel implements PropertyChangeListener {
       }
 
       // Register this panel to listen to changes in the Blackboard
-      Blackboard.getInstance().addPropertyChangeListener(Blackboard.PROPERTY_NAME_VIEW_DATA, this);
+      blackboard.addPropertyChangeListener(Blackboard.PROPERTY_NAME_FREQUENCIES, this);
    }
 
    /**
@@ -118,35 +133,38 @@ public class ColorKeyPanel extends JPanel implements PropertyChangeListener {
    }
 
    /**
-    * Updates the frequency labels with the current values from the Blackboard.
-    * This method is called when new processed data is available.
+    * Updates the frequency labels with the current snapshot from the Blackboard.
+    * Runs on the event dispatch thread.
     */
    private void updateFrequencies() {
-      try {
-         List<String> frequencies = Blackboard.getInstance().getFrequencies();
+      updatePending.set(false);
+      EmotionFrequencies frequencies = blackboard.getFrequencySnapshot();
+      if (frequencies == displayedFrequencies) {
+         return;
+      }
+      displayedFrequencies = frequencies;
 
-         for (int i = 0; i < frequencies.size(); i++) {
-            if (frequencyLabels[i] != null) {
-               frequencyLabels[i].setText(frequencies.get(i));
-            }
+      for (int i = 0; i < frequencies.size(); i++) {
+         if (frequencyLabels[i] != null) {
+            frequencyLabels[i].setText(frequencies.percentage(i) + "%");
          }
-
-         repaint();
-      } catch (InterruptedException e) {
-         e.printStackTrace();
       }
+
+      repaint();
    }
 
    /**
-    * Handles property change events triggered by new processed data. It updates
-    * the frequency labels when new processed data is received.
+    * Handles property change events triggered by new frequency snapshots. It
+    * schedules an update of the frequency labels on the event dispatch thread
+    * unless one is already pending.
     * 
     * @param evt The property change event containing the new data.
     */
    @Override
    public void propertyChange(PropertyChangeEvent evt) {
-      if (Blackboard.PROPERTY_NAME_VIEW_DATA.equals(evt.getPropertyName())) {
-         updateFrequencies();
+      if (Blackboard.PROPERTY_NAME_FREQUENCIES.equals(evt.getPropertyName())
+            && updatePending.compareAndSet(false, true)) {
+         SwingUtilities.invokeLater(this::updateFrequencies);
       }
    }
 
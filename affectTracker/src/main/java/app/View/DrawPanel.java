@@ -1,22 +1,23 @@
 package app.View;
 
+import java.awt.AlphaComposite;
 import java.awt.Color;
+import java.awt.Composite;
 import java.awt.Font;
-import java.awt.FontMetrics;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.font.FontRenderContext;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.util.Deque;
-import java.util.List;
 
 import javax.swing.JPanel;
 import javax.swing.border.MatteBorder;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import app.Data.Highlight;
+import app.Data.Emotion;
+import app.Data.HighlightSequence;
 import app.Model.Blackboard;
+import app.Model.RenderSnapshot;
 
 /**
  * The {@code DrawPanel} class is a custom {@link JPanel} that visually
@@ -48,9 +49,10 @@ import app.Model.Blackboard;
  */
 public class DrawPanel extends JPanel implements PropertyChangeListener {
 
-   private final Logger log = LoggerFactory.getLogger(DrawPanel.class);
-   private final Deque<List<Highlight>> globalHighlightList = Blackboard.getInstance().getHighlightCollections();
-   private final List<Highlight> highlightList = Blackboard.getInstance().getHighlightList();
+   private static final float HIGHLIGHT_OPACITY = 0.5f;
+   private static final Font TEXT_FONT = new Font("Arial", Font.PLAIN, 14);
+   private final Blackboard blackboard;
+   private final RenderScheduler renderScheduler;
 
    private final String paragraph = """
          Lorem ipsum odor amet, consectetuer adipiscing elit. Eu diam luctus semper montes sodales. Sed nostra dignissim venenatis ut ullamcorper platea sagittis.
@@ -65,114 +67,156 @@ public class DrawPanel extends JPanel implements PropertyChangeListener {
    private final int lineHeight = 100;
    private final int xOffset = 50; // Offsets for text
    private final int yOffset = 50;
+   private Runnable firstPaintCallback;
+   // the wrapped paragraph, laid out again only when the width or text changes
+   private ParagraphLayout layout;
 
    /**
     * Constructor for the {@code DrawPanel}. Initializes the panel and sets up
     * property change listener for processing highlight data.
     */
    public DrawPanel() {
+      this(Blackboard.getInstance());
+   }
+
+   /**
+    * @param blackboard the session whose highlights are drawn
+    */
+   public DrawPanel(Blackboard blackboard) {
+      this.blackboard = blackboard;
+      this.renderScheduler = new RenderScheduler(this, RenderScheduler.DEFAULT_FPS);
       setBackground(Color.WHITE);
       setBorder(new MatteBorder(3, 3, 3, 3, Color.BLACK));
-      Blackboard.getInstance().addPropertyChangeListener(Blackboard.PROPERTY_NAME_VIEW_DATA, this);
+      blackboard.addPropertyChangeListener(Blackboard.PROPERTY_NAME_VIEW_DATA, this);
+   }
+
+   /**
+    * Registers a callback that runs on the event dispatch thread the first time
+    * the panel is painted.
+    *
+    * @param firstPaintCallback the callback
+    */
+   public void setFirstPaintCallback(Runnable firstPaintCallback) {
+      this.firstPaintCallback = firstPaintCallback;
+   }
+
+   /**
+    * @return the scheduler that paces the repaints of this panel
+    */
+   public RenderScheduler getRenderScheduler() {
+      return renderScheduler;
+   }
+
+   @Override
+   public void addNotify() {
+      super.addNotify();
+      renderScheduler.start();
+   }
+
+   @Override
+   public void removeNotify() {
+      renderScheduler.stop();
+      super.removeNotify();
    }
 
    /**
     * Paints the component, wrapping the paragraph text and rendering the
-    * highlights as they are received through property changes.
+    * highlights as they are received through property changes. Only the text
+    * lines and highlights that intersect the clip, usually the region that
+    * changed, are drawn.
     * 
     * @param g The Graphics object used for drawing.
     */
    @Override
    protected void paintComponent(Graphics g) {
+      long start = System.nanoTime();
       super.paintComponent(g);
-      Font font = new Font("Arial", Font.PLAIN, 14);
-      g.setFont(font);
-
-      // Use FontMetrics to measure text
-      FontMetrics metrics = g.getFontMetrics(font);
-
-      // Wrap the paragraph into multiple lines
-      String[] lines = wrapText(paragraph, metrics, getWidth() - 2 * xOffset);
-
-      // Draw each line of text
-      int currentY = yOffset;
-      for (String line : lines) {
-         g.drawString(line, xOffset, currentY);
-         // Move to the next line
-         currentY += lineHeight;
+      if (firstPaintCallback != null) {
+         Runnable callback = firstPaintCallback;
+         firstPaintCallback = null;
+         callback.run();
+      }
+      Graphics2D g2d = (Graphics2D) g;
+      g2d.setFont(TEXT_FONT);
+
+      // Wrap the paragraph into lines of glyphs, unless the last layout still fits
+      FontRenderContext context = g2d.getFontRenderContext();
+      int width = getWidth() - 2 * xOffset;
+      if (layout == null || !layout.matches(paragraph, TEXT_FONT, context, width)) {
+         layout = ParagraphLayout.wrap(paragraph, TEXT_FONT, context, width, xOffset, yOffset, lineHeight);
       }
 
-      // Draw all highlights
-      for (List<Highlight> localHighlightList : globalHighlightList) {
-         for (Highlight highlight : localHighlightList) {
-            highlight.drawHighlight(g);
+      // Draw each line of text that reaches into the clip
+      Rectangle clip = g.getClipBounds();
+      layout.draw(g2d, clip);
+
+      // Draw all highlights, the committed collections and the current ones, as
+      // published at one epoch; the processing thread never changes them
+      RenderSnapshot snapshot = blackboard.getRenderSnapshot();
+      Composite originalComposite = g2d.getComposite();
+      g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, HIGHLIGHT_OPACITY));
+      int height = blackboard.getRowSize() / 3;
+      for (HighlightSequence collection : snapshot.collections()) {
+         // the bounds of committed collections are cached, so whole collections
+         // outside the clip are skipped without reading them
+         if (clip == null || clip.intersects(toView(collection.bounds(), height))) {
+            drawHighlights(g2d, collection, height, clip);
          }
       }
+      drawHighlights(g2d, snapshot.pending(), height, clip);
+      g2d.setComposite(originalComposite);
       g.setColor(Color.BLACK);
+      renderScheduler.frameRendered(start, System.nanoTime());
    }
 
    /**
-    * Wraps the input text into multiple lines based on the available width.
-    * 
-    * @param text     The input text to wrap.
-    * @param metrics  The font metrics used to calculate string width.
-    * @param maxWidth The maximum width available for each line.
-    * @return A string array containing wrapped lines of text.
+    * Draws each highlight that intersects the clip as a bar of its length
+    * centered on its x coordinate, reading the columns in order.
     */
-   private String[] wrapText(String text, FontMetrics metrics, int maxWidth) {
-      String[] words = text.split(" ");
-      StringBuilder currentLine = new StringBuilder();
-      java.util.List<String> lines = new java.util.ArrayList<>();
-
-      for (String word : words) {
-         if (metrics.stringWidth(currentLine.toString() + word) <= maxWidth) {
-            currentLine.append(word).append(" ");
-         } else {
-            lines.add(currentLine.toString().trim());
-            currentLine.setLength(0); // Reset the current line
-            currentLine.append(word).append(" ");
+   private void drawHighlights(Graphics2D g, HighlightSequence highlights, int height, Rectangle clip) {
+      int emotion = Integer.MIN_VALUE;
+      for (int i = 0; i < highlights.size(); i++) {
+         int length = highlights.length(i);
+         int left = highlights.x(i) - (length / 2);
+         int top = highlights.y(i);
+         if (clip != null && (left >= clip.x + clip.width || left + length <= clip.x
+               || top >= clip.y + clip.height || top + height <= clip.y)) {
+            continue;
+         }
+         if (highlights.emotion(i) != emotion) {
+            emotion = highlights.emotion(i);
+            g.setColor(Emotion.colorOf(emotion));
          }
+         g.fillRect(left, top, length, height);
       }
+   }
 
-      // Add the last line
-      if (currentLine.length() > 0) {
-         lines.add(currentLine.toString().trim());
+   /**
+    * @return the area of the panel covered by highlights with the given model
+    *         bounds, see {@link HighlightSequence#bounds()}
+    */
+   private static Rectangle toView(Rectangle bounds, int height) {
+      if (bounds.isEmpty()) {
+         return bounds;
       }
-
-      return lines.toArray(new String[0]);
+      return new Rectangle(bounds.x, bounds.y, bounds.width, bounds.height - 1 + Math.max(1, height));
    }
 
    /**
-    * Handles property change events triggered by new highlight data. It processes
-    * either a single highlight or a list of highlights and updates the drawing
-    * accordingly.
-    * 
-    * @param evt The property change event containing the new highlight data.
+    * Requests a frame when the highlights changed; the {@link RenderScheduler}
+    * paints the changes of one frame at once. Only the area the snapshot
+    * reports as changed is repainted. The highlights are read from the
+    * Blackboard's render snapshot when painting.
+    *
+    * @param evt The property change event signalling new highlight data.
     */
    @Override
    public void propertyChange(PropertyChangeEvent evt) {
       if (Blackboard.PROPERTY_NAME_VIEW_DATA.equals(evt.getPropertyName())) {
-         if (evt.getNewValue() instanceof Highlight) {
-            // Handle single Highlight
-            Highlight newHighlight = (Highlight) evt.getNewValue();
-            this.highlightList.add(newHighlight);
-            repaint();
-         } else if (evt.getNewValue() instanceof List<?>) {
-            List<?> newList = (List<?>) evt.getNewValue();
-            if (!newList.isEmpty()) {
-               if (newList.get(0) instanceof Highlight) {
-                  // Handle list of Highlights
-                  List<Highlight> newHighlightList = (List<Highlight>) newList;
-                  this.globalHighlightList.add(newHighlightList);
-                  repaint();
-               } else {
-                  log.warn("Unexpected payload in PropertyChangeEvent: {}", evt.getNewValue());
-               }
-            } else {
-               log.warn("Unexpected payload in PropertyChangeEvent: {}", evt.getNewValue());
-            }
+         if (evt.getNewValue() instanceof RenderSnapshot snapshot && snapshot.damage() != null) {
+            renderScheduler.requestFrame(toView(snapshot.damage(), blackboard.getRowSize() / 3));
          } else {
-            log.warn("Unexpected payload in PropertyChangeEvent: {}", evt.getNewValue());
+            renderScheduler.requestFrame();
          }
       }
    }
@@ -3,6 +3,9 @@ package app.View;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import javax.swing.JFrame;
 import javax.swing.JMenu;
@@ -15,6 +18,9 @@ import app.Controller.MainController;
 import app.Model.Blackboard;
 import app.Model.MouseDataEncoder;
 import app.Model.RawDataProcessor;
+import app.Model.StateSnapshotter;
+import app.Model.TaskExecutors;
+import app.Model.TaskGroup;
 import app.Model.ViewDataProcessor;
 import emotivLib.EmotivServer;
 import mqttLib.Encoder;
@@ -36,6 +42,12 @@ import mqttLib.Encoder;
  * <p>
  * Main also acts as the default factory for necessary components.
  * </p>
+ *
+ * <p>
+ * In render-only mode ({@code --render-only}) the window does no processing:
+ * it subscribes to the view topic on which a processing node publishes its
+ * highlight deltas and frequency snapshots and only displays them.
+ * </p>
  * 
  * <p>
  * Code Metrics:
@@ -54,7 +66,17 @@ import mqttLib.Encoder;
  * @version 1.0
  */
 public class Main extends JFrame {
-   private TheSubscriberMQTT mqttSubscriber = null;
+   public static final String RENDER_ONLY_OPTION = "--render-only";
+   private final boolean renderOnly;
+   // the broker disconnects a client when another connects with its id, so
+   // every render-only client needs its own
+   private final String clientIdSuffix;
+   private TaskGroup clientTasks = null;
+   private MQTTMouseServer mqttServer = null;
+   // Start and Stop run on the event dispatch thread; the client groups are
+   // closed and forked in order on an io thread, so a slow broker never
+   // freezes the window
+   private CompletableFuture<Void> clientLifecycle = CompletableFuture.completedFuture(null);
    private final DrawPanel drawPanel;
 
    /**
@@ -62,6 +84,16 @@ public class Main extends JFrame {
     * action buttons, and panels for displaying visual data.
     */
    public Main() {
+      this(false);
+   }
+
+   /**
+    * @param renderOnly whether to display the view topic instead of processing
+    *                   the raw data locally
+    */
+   public Main(boolean renderOnly) {
+      this.renderOnly = renderOnly;
+      this.clientIdSuffix = renderOnly ? "-render-" + UUID.randomUUID() : "";
       setLayout(new BorderLayout());
 
       // Menu bar
@@ -95,14 +127,25 @@ public class Main extends JFrame {
       Blackboard.getInstance().addPropertyChangeListener(Blackboard.EYE_DATA_LABEL, controller);
       Blackboard.getInstance().addPropertyChangeListener(Blackboard.EMOTION_DATA_LABEL, controller);
       Blackboard.getInstance().addPropertyChangeListener(Blackboard.MQTT_CONN_SUCCESS, controller);
-      Blackboard.getInstance().addPropertyChangeListener(Blackboard.PROPERTY_NAME_VIEW_DATA, drawPanel);
+   }
 
-      // Starting Threads
-      Thread dataProcessor = new Thread(new RawDataProcessor());
-      Thread dpDelegate = new Thread(new ViewDataProcessor());
+   /**
+    * Starts the processors, which live as long as the window. Nothing is
+    * processed locally in render-only mode.
+    */
+   void startProcessors() {
+      if (!renderOnly) {
+         TaskExecutors.io().execute(new RawDataProcessor());
+         TaskExecutors.io().execute(new ViewDataProcessor());
+      }
+   }
 
-      dataProcessor.start();
-      dpDelegate.start();
+   void setFirstPaintCallback(Runnable callback) {
+      drawPanel.setFirstPaintCallback(callback);
+   }
+
+   void setTargetFps(int targetFps) {
+      drawPanel.getRenderScheduler().setTargetFps(targetFps);
    }
 
    /**
@@ -122,64 +165,87 @@ public class Main extends JFrame {
 
    /**
     * Establishes MQTT connections and starts the necessary servers for data
-    * retrieval.
+    * retrieval. The clients form one task group that is stopped as a whole by
+    * {@link #cleanUpThreads()}. In render-only mode only the view topic is
+    * subscribed and no mouse data is published. The clients are started once
+    * those of the last Start have stopped; the method returns immediately.
     */
-   public void connectClients() {
+   public synchronized void connectClients() {
       cleanUpThreads();
 
-      Encoder mouseDataEncoder = new MouseDataEncoder();
-      MQTTMouseServer mqttServer = new MQTTMouseServer(Blackboard.getInstance().getMqttBroker(),
-            "MouseDataPublisher",
-            "app/SimulatedEyeData", mouseDataEncoder);
-      drawPanel.addMouseMotionListener(mqttServer);
-
       HashMap<String, String> topicsAndPrefixes = new HashMap<>();
 
-      topicsAndPrefixes.put(Blackboard.getInstance().getMqttEyeTopic(), Blackboard.EYE_DATA_LABEL);
-      topicsAndPrefixes.put(Blackboard.getInstance().getMqttEmotionTopic(), Blackboard.EMOTION_DATA_LABEL);
-
-      mqttSubscriber = new TheSubscriberMQTT(Blackboard.getInstance().getMqttBroker(), "readingHub",
-            topicsAndPrefixes, Blackboard.getInstance());
+      if (renderOnly) {
+         // a display client only watches, so its mouse moves are not sent as gaze
+         topicsAndPrefixes.put(Blackboard.getInstance().getMqttViewTopic(), Blackboard.VIEW_DATA_LABEL);
+      } else {
+         Encoder mouseDataEncoder = new MouseDataEncoder();
+         mqttServer = new MQTTMouseServer(Blackboard.getInstance().getMqttBroker(), "MouseDataPublisher",
+               "app/SimulatedEyeData", mouseDataEncoder);
+         drawPanel.addMouseMotionListener(mqttServer);
+         topicsAndPrefixes.put(Blackboard.getInstance().getMqttEyeTopic(), Blackboard.EYE_DATA_LABEL);
+         topicsAndPrefixes.put(Blackboard.getInstance().getMqttEmotionTopic(), Blackboard.EMOTION_DATA_LABEL);
+      }
 
-      Thread mouseDataServer = new Thread(mqttServer);
-      mouseDataServer.start();
-      Thread mqttSubscriberThread = new Thread(mqttSubscriber);
-      mqttSubscriberThread.start();
+      TheSubscriberMQTT mqttSubscriber = new TheSubscriberMQTT(Blackboard.getInstance().getMqttBroker(),
+            "readingHub" + clientIdSuffix, topicsAndPrefixes, Blackboard.getInstance());
+
+      TaskGroup group = new TaskGroup("MQTT clients");
+      MQTTMouseServer mouseServer = mqttServer;
+      clientTasks = group;
+      afterPreviousClients(() -> {
+         if (mouseServer != null) {
+            group.fork(mouseServer, mouseServer::stopServer);
+         }
+         group.fork(mqttSubscriber, mqttSubscriber::stopSubscriber);
+      });
    }
 
    /**
-    * Cleans up any active threads.
+    * Stops the clients of the last Start. Returns immediately; the clients are
+    * closed, waiting for them to finish, off the calling thread.
     */
-   public void cleanUpThreads() {
-      if (mqttSubscriber != null) {
-         mqttSubscriber.stopSubscriber();
-         mqttSubscriber = null;
+   public synchronized void cleanUpThreads() {
+      if (mqttServer != null) {
+         drawPanel.removeMouseMotionListener(mqttServer);
+         mqttServer = null;
       }
+      if (clientTasks != null) {
+         afterPreviousClients(clientTasks::close);
+         clientTasks = null;
+      }
+   }
+
+   /**
+    * Runs a step of the client lifecycle on {@link TaskExecutors#io()} once the
+    * previous steps are done.
+    */
+   private void afterPreviousClients(Runnable step) {
+      // a failed step must not hold up the later ones
+      clientLifecycle = clientLifecycle.exceptionally(e -> null).thenRunAsync(step, TaskExecutors.io());
    }
 
    /**
     * Starts the server threads for testing purposes.
     */
-   private void startServerThreads() {
+   void startServerThreads() {
       EmotivServer emotivServer = new EmotivServer(Blackboard.getInstance().getMqttBroker(),
             "MQTTEmotionServer", Blackboard.getInstance().getMqttEmotionTopic(), message -> message);
-      Thread emotivDataThread = new Thread(emotivServer);
-      emotivDataThread.start();
+      TaskExecutors.io().execute(emotivServer);
    }
 
    /**
     * The main entry point for the application. Initializes the main window
     * and starts the necessary threads for both data retrieval and visualization.
     * 
-    * @param args Command-line arguments to specify testing or default behavior.
+    * @param args Command-line arguments to specify testing or default behavior;
+    *             {@value #RENDER_ONLY_OPTION} selects render-only mode and
+    *             {@code --warmup=N} warms the JIT up with N synthetic samples
+    *             and {@code --snapshot=path} saves and restores the session state.
+    *             {@code --fps=N} limits the draw panel to N frames per second.
     */
    public static void main(String[] args) {
-      Main window = new Main();
-      window.setTitle("Eye Tracking & Emotion Hub");
-      window.setSize(1024, 768);
-      window.setLocationRelativeTo(null);
-      window.setVisible(true);
-      window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-      window.startServerThreads();
+      new StartupOrchestrator(List.of(args).contains(RENDER_ONLY_OPTION), WarmUp.samplesFrom(args),
+            StateSnapshotter.fileFrom(args), RenderScheduler.fpsFrom(args)).start();
    }
 }
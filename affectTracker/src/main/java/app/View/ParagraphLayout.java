@@ -0,0 +1,112 @@
+package app.View;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.LineMetrics;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A paragraph wrapped to a width and laid out as glyphs, ready to be drawn.
+ * <p>
+ * Wrapping measures every word once and adds up the advances, so it is linear
+ * in the length of the text. The glyphs of each line are shaped once, and their
+ * bounds are kept so lines outside the clip are skipped. A layout is only
+ * valid for the text, font, render context and width it was made for; the
+ * owner keeps it until {@link #matches} fails, i.e. until the panel is resized
+ * or the text changes.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+final class ParagraphLayout {
+
+   private final String text;
+   private final Font font;
+   private final FontRenderContext context;
+   private final int width;
+   private final List<Line> lines;
+
+   private ParagraphLayout(String text, Font font, FontRenderContext context, int width, List<Line> lines) {
+      this.text = text;
+      this.font = font;
+      this.context = context;
+      this.width = width;
+      this.lines = lines;
+   }
+
+   /**
+    * Wraps the text at spaces into lines of at most the given width; a word
+    * wider than that gets a line of its own.
+    *
+    * @param x          left edge of the lines
+    * @param y          baseline of the first line
+    * @param lineHeight distance between two baselines
+    * @return the layout
+    */
+   static ParagraphLayout wrap(String text, Font font, FontRenderContext context, int width, int x, int y,
+         int lineHeight) {
+      double space = font.getStringBounds(" ", context).getWidth();
+      List<Line> lines = new ArrayList<>();
+      int lineStart = 0;
+      double lineWidth = 0; // including the trailing space
+      int wordStart = 0;
+      while (wordStart <= text.length()) {
+         int wordEnd = text.indexOf(' ', wordStart);
+         if (wordEnd < 0) {
+            wordEnd = text.length();
+         }
+         double wordWidth = font.getStringBounds(text, wordStart, wordEnd, context).getWidth();
+         if (lineWidth > 0 && lineWidth + wordWidth > width) {
+            lines.add(line(text.substring(lineStart, wordStart).trim(), font, context, x,
+                  y + lines.size() * lineHeight));
+            lineStart = wordStart;
+            lineWidth = 0;
+         }
+         lineWidth += wordWidth + space;
+         wordStart = wordEnd + 1;
+      }
+      if (lineStart < text.length()) {
+         lines.add(line(text.substring(lineStart).trim(), font, context, x, y + lines.size() * lineHeight));
+      }
+      return new ParagraphLayout(text, font, context, width, List.copyOf(lines));
+   }
+
+   /**
+    * @return whether the layout was made for these parameters
+    */
+   boolean matches(String text, Font font, FontRenderContext context, int width) {
+      return this.width == width && this.text.equals(text) && this.font.equals(font)
+            && this.context.equals(context);
+   }
+
+   /**
+    * Draws the lines that intersect the clip.
+    *
+    * @param clip the clip bounds, null to draw every line
+    */
+   void draw(Graphics2D g, Rectangle clip) {
+      for (Line line : lines) {
+         if (clip == null || clip.intersects(line.bounds)) {
+            g.drawGlyphVector(line.glyphs, line.x, line.baseline);
+         }
+      }
+   }
+
+   private static Line line(String text, Font font, FontRenderContext context, int x, int baseline) {
+      GlyphVector glyphs = font.createGlyphVector(context, text);
+      LineMetrics metrics = font.getLineMetrics(text, context);
+      Rectangle bounds = new Rectangle(x, baseline - (int) Math.ceil(metrics.getAscent()),
+            (int) Math.ceil(glyphs.getLogicalBounds().getWidth()) + 1,
+            (int) Math.ceil(metrics.getAscent() + metrics.getDescent()) + 1);
+      return new Line(glyphs, x, baseline, bounds);
+   }
+
+   private record Line(GlyphVector glyphs, int x, int baseline, Rectangle bounds) {
+   }
+}
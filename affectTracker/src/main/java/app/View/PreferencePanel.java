@@ -44,6 +44,7 @@ public class PreferencePanel extends JPanel {
    private final JTextField emotionTopicField;
    private final JTextField maxHighlightsField;
    private final JTextField thresholdLengthField;
+   private final Blackboard blackboard;
 
    /**
     * Constructs the preference panel and initializes the UI components.
@@ -53,14 +54,20 @@ public class PreferencePanel extends JPanel {
     * max highlights, and threshold length.
     */
    public PreferencePanel() {
+      this(Blackboard.getInstance());
+   }
+
+   /**
+    * @param blackboard the session whose settings are edited
+    */
+   public PreferencePanel(Blackboard blackboard) {
+      this.blackboard = blackboard;
       setPreferredSize(new Dimension(1000, 250));
       setLayout(new GridBagLayout());
       GridBagConstraints gbc = new GridBagConstraints();
       gbc.insets = new Insets(10, 10, 10, 10);
       gbc.anchor = GridBagConstraints.WEST;
 
-      Blackboard blackboard = Blackboard.getInstance();
-
       // MQTT Broker
       gbc.gridx = 0;
       gbc.gridy = 0;
@@ -127,7 +134,6 @@ public class PreferencePanel extends JPanel {
     */
    private void applyChanges() {
       try {
-         Blackboard blackboard = Blackboard.getInstance();
          blackboard.setMqttBroker(mqttBrokerField.getText());
          blackboard.setMqttEyeTopic(eyeTopicField.getText());
          blackboard.setMqttEmotionTopic(emotionTopicField.getText());
@@ -0,0 +1,222 @@
+package app.View;
+
+import java.awt.Rectangle;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Paces the repaints of a component to a target frame rate, independent of
+ * the rate at which its model changes.
+ * <p>
+ * Any thread may {@link #requestFrame() request} a frame, e.g. for every
+ * view-data event; the request only marks the component, or a region of it,
+ * dirty. A Swing timer ticks once per frame on the event dispatch thread and
+ * repaints the union of the dirty regions, so all the changes of one frame are
+ * painted at once and an idle model costs no painting. The component reports
+ * every painted frame through {@link #frameRendered(long, long)}; the scheduler
+ * reports the frame rate and paint times periodically through the logger.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class RenderScheduler {
+
+   public static final String FPS_OPTION = "--fps=";
+   public static final int DEFAULT_FPS = 60;
+   private static final Logger LOGGER = LoggerFactory.getLogger(RenderScheduler.class);
+   private static final long REPORT_INTERVAL_MS = 10_000;
+
+   private final JComponent component;
+   private final Timer timer;
+   // what to repaint with the next frame, under the scheduler's lock;
+   // everything if dirtyAll, else dirtyRegion unless it is empty
+   private boolean dirtyAll;
+   private Rectangle dirtyRegion = new Rectangle();
+   private final LongAdder requests = new LongAdder();
+   private volatile int targetFps;
+   // frame statistics, written on the event dispatch thread only
+   private volatile long frames;
+   private volatile long paintNanos;
+   private volatile long maxPaintNanos;
+   private long lastReport = System.currentTimeMillis();
+   private long framesAtLastReport;
+   private long requestsAtLastReport;
+
+   /**
+    * @param component the component to repaint
+    * @param targetFps frames per second at most
+    */
+   public RenderScheduler(JComponent component, int targetFps) {
+      this.component = component;
+      this.timer = new Timer(frameMillis(targetFps), e -> tick());
+      this.timer.setCoalesce(true);
+      this.targetFps = targetFps;
+   }
+
+   /**
+    * Starts pacing the repaints, e.g. once the component is displayed.
+    */
+   public void start() {
+      timer.start();
+   }
+
+   /**
+    * Stops pacing the repaints; requests are kept until the next start.
+    */
+   public void stop() {
+      timer.stop();
+   }
+
+   /**
+    * Asks for the component to be repainted with the next frame. Safe to call
+    * from any thread.
+    */
+   public void requestFrame() {
+      requests.increment();
+      synchronized (this) {
+         dirtyAll = true;
+      }
+   }
+
+   /**
+    * Asks for a region of the component to be repainted with the next frame.
+    * Safe to call from any thread.
+    *
+    * @param region the region, in component coordinates; not kept
+    */
+   public void requestFrame(Rectangle region) {
+      requests.increment();
+      if (region.isEmpty()) {
+         return;
+      }
+      synchronized (this) {
+         dirtyRegion = dirtyRegion.isEmpty() ? new Rectangle(region) : dirtyRegion.union(region);
+      }
+   }
+
+   /**
+    * Records a painted frame. Called by the component on the event dispatch
+    * thread.
+    *
+    * @param startNanos {@link System#nanoTime()} when painting started
+    * @param endNanos   {@link System#nanoTime()} when it was done
+    */
+   public void frameRendered(long startNanos, long endNanos) {
+      long nanos = endNanos - startNanos;
+      frames++;
+      paintNanos += nanos;
+      if (nanos > maxPaintNanos) {
+         maxPaintNanos = nanos;
+      }
+   }
+
+   public int getTargetFps() {
+      return targetFps;
+   }
+
+   /**
+    * Changes the frame rate. Called on the event dispatch thread.
+    *
+    * @param targetFps frames per second at most
+    */
+   public void setTargetFps(int targetFps) {
+      this.targetFps = targetFps;
+      timer.setDelay(frameMillis(targetFps));
+   }
+
+   /**
+    * @return the frame statistics since the scheduler was created
+    */
+   public Metrics getMetrics() {
+      long count = frames;
+      return new Metrics(targetFps, count, requests.sum(), count == 0 ? 0 : paintNanos / 1e6 / count,
+            maxPaintNanos / 1e6);
+   }
+
+   private void tick() {
+      boolean all;
+      Rectangle region;
+      synchronized (this) {
+         all = dirtyAll;
+         region = dirtyRegion;
+         dirtyAll = false;
+         dirtyRegion = new Rectangle();
+      }
+      if (all) {
+         component.repaint();
+      } else if (!region.isEmpty()) {
+         component.repaint(region);
+      }
+      long now = System.currentTimeMillis();
+      if (now - lastReport >= REPORT_INTERVAL_MS) {
+         long count = frames;
+         long requested = requests.sum();
+         if (count != framesAtLastReport) {
+            LOGGER.info("Rendering {} fps for {} view updates/s, {}", String.format("%.1f",
+                  (count - framesAtLastReport) * 1000.0 / (now - lastReport)),
+                  String.format("%.1f", (requested - requestsAtLastReport) * 1000.0 / (now - lastReport)),
+                  getMetrics());
+         }
+         lastReport = now;
+         framesAtLastReport = count;
+         requestsAtLastReport = requested;
+      }
+   }
+
+   private static int frameMillis(int fps) {
+      return Math.max(1, 1000 / Math.max(1, fps));
+   }
+
+   /**
+    * @param args command-line arguments
+    * @return the frame rate given with {@value #FPS_OPTION}, or
+    *         {@value #DEFAULT_FPS} if there is none or it is not a positive
+    *         number
+    */
+   public static int fpsFrom(String[] args) {
+      for (String arg : args) {
+         if (arg.startsWith(FPS_OPTION)) {
+            String value = arg.substring(FPS_OPTION.length());
+            try {
+               int fps = Integer.parseInt(value);
+               if (fps > 0) {
+                  return fps;
+               }
+            } catch (NumberFormatException e) {
+               // reported below
+            }
+            LOGGER.warn("Ignoring {}{}, not a positive frame rate; rendering at {} fps", FPS_OPTION, value,
+                  DEFAULT_FPS);
+            return DEFAULT_FPS;
+         }
+      }
+      return DEFAULT_FPS;
+   }
+
+   /**
+    * Frame statistics of a component.
+    *
+    * @param targetFps       the frame rate aimed at
+    * @param frames          number of frames painted
+    * @param requests        number of frames requested, usually many more than
+    *                        painted
+    * @param meanPaintMillis mean time to paint a frame
+    * @param maxPaintMillis  longest time to paint a frame
+    */
+   public record Metrics(int targetFps, long frames, long requests, double meanPaintMillis,
+         double maxPaintMillis) {
+
+      @Override
+      public String toString() {
+         return String.format("frames=%d requests=%d paint=%.2fms max=%.2fms", frames, requests, meanPaintMillis,
+               maxPaintMillis);
+      }
+   }
+}
@@ -0,0 +1,114 @@
+package app.View;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import app.Model.Blackboard;
+import app.Model.StateSnapshotter;
+import app.Model.TaskExecutors;
+
+/**
+ * The {@code StartupOrchestrator} brings the application up in the order the
+ * user notices: the window is built and shown on the event dispatch thread
+ * first, then the processors, after an optional {@link WarmUp}, and the
+ * Emotiv server, which connects to Cortex and the broker, start in parallel in
+ * the background. If a snapshot file is given, the state saved by the last run
+ * is restored before the window is built and saved periodically from then on,
+ * see {@link StateSnapshotter}. The draw panel is painted at most at the
+ * target frame rate, see {@link RenderScheduler}.
+ * <p>
+ * Two startup metrics are logged, measured from the start of the JVM:
+ * time-to-first-frame, when the draw panel is painted for the first time, and
+ * time-to-first-data, when the first processed data reaches the view.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class StartupOrchestrator implements PropertyChangeListener {
+
+   private static final Logger LOGGER = LoggerFactory.getLogger(StartupOrchestrator.class);
+
+   private final boolean renderOnly;
+   private final int warmUpSamples;
+   private final Path snapshotFile;
+   private final int targetFps;
+   private final AtomicBoolean firstData = new AtomicBoolean();
+
+   /**
+    * @param renderOnly    whether the window only displays the view topic
+    * @param warmUpSamples number of synthetic samples to warm the JIT up with
+    *                      before the processors go live, 0 to skip the warm-up
+    * @param snapshotFile  file the session state is saved to and restored from,
+    *                      null to start empty every time
+    * @param targetFps     frames per second the draw panel is painted at most
+    */
+   public StartupOrchestrator(boolean renderOnly, int warmUpSamples, Path snapshotFile, int targetFps) {
+      this.renderOnly = renderOnly;
+      this.warmUpSamples = warmUpSamples;
+      this.snapshotFile = snapshotFile;
+      this.targetFps = targetFps;
+   }
+
+   /**
+    * Shows the window, then starts the background work. Returns immediately.
+    */
+   public void start() {
+      if (snapshotFile != null) {
+         StateSnapshotter snapshotter = new StateSnapshotter(Blackboard.getInstance(), snapshotFile,
+               StateSnapshotter.DEFAULT_INTERVAL_MS);
+         snapshotter.restore();
+         snapshotter.start();
+         Runtime.getRuntime().addShutdownHook(new Thread(snapshotter::close));
+      }
+      SwingUtilities.invokeLater(this::showWindow);
+   }
+
+   private void showWindow() {
+      Main window = new Main(renderOnly);
+      window.setTitle("Eye Tracking & Emotion Hub");
+      window.setSize(1024, 768);
+      window.setLocationRelativeTo(null);
+      window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+      window.setFirstPaintCallback(() -> LOGGER.info("Time to first frame: {} ms", uptime()));
+      window.setTargetFps(targetFps);
+      Blackboard.getInstance().addPropertyChangeListener(Blackboard.PROPERTY_NAME_VIEW_DATA, this);
+      window.setVisible(true);
+
+      // started in parallel once the window is up
+      TaskExecutors.io().execute(() -> {
+         if (warmUpSamples > 0) {
+            new WarmUp(warmUpSamples, true).run();
+         }
+         window.startProcessors();
+      });
+      TaskExecutors.io().execute(window::startServerThreads);
+   }
+
+   /**
+    * Logs the time to the first processed data.
+    */
+   @Override
+   public void propertyChange(PropertyChangeEvent evt) {
+      if (firstData.compareAndSet(false, true)) {
+         LOGGER.info("Time to first data: {} ms", uptime());
+         // removed from another thread, the listener list must not change while firing
+         TaskExecutors.io().execute(() -> Blackboard.getInstance()
+               .removePropertyChangeListener(Blackboard.PROPERTY_NAME_VIEW_DATA, this));
+      }
+   }
+
+   private static long uptime() {
+      return ManagementFactory.getRuntimeMXBean().getUptime();
+   }
+}
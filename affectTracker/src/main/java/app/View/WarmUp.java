@@ -0,0 +1,167 @@
+package app.View;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.swing.SwingUtilities;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import app.Model.Blackboard;
+import app.Model.RawDataProcessor;
+import app.Model.TaskExecutors;
+import app.Model.ViewDataProcessor;
+
+/**
+ * The {@code WarmUp} pushes synthetic gaze and emotion samples through the
+ * real parsing, processing and painting code before live data arrives, so the
+ * JIT has compiled the hot paths by the time the first reader starts.
+ * <p>
+ * The samples go through a {@link RawDataProcessor} and a
+ * {@link ViewDataProcessor} bound to a throw-away {@link Blackboard} session,
+ * and an offscreen {@link DrawPanel} of that session is painted periodically.
+ * Closing the session afterwards discards all state the warm-up created; the
+ * live session is never touched.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class WarmUp {
+
+   public static final String WARM_UP_OPTION = "--warmup=";
+   private static final Logger LOGGER = LoggerFactory.getLogger(WarmUp.class);
+   private static final int EMOTION_EVERY = 10;
+   private static final int PAINT_EVERY = 100;
+   private static final int PAUSE_EVERY = 32;
+   private static final long SETTLE_MS = 100;
+   private static final long DRAIN_TIMEOUT_MS = 10_000;
+   private static final int PANEL_SIZE = 1000;
+
+   private final int samples;
+   private final boolean paint;
+
+   /**
+    * @param samples number of synthetic gaze samples
+    * @param paint   whether to paint an offscreen draw panel as well
+    */
+   public WarmUp(int samples, boolean paint) {
+      this.samples = samples;
+      this.paint = paint;
+   }
+
+   /**
+    * Runs the warm-up and waits until the synthetic data has been processed.
+    */
+   public void run() {
+      long start = System.nanoTime();
+      Blackboard session = Blackboard.getSession("warmup-" + start);
+      // both processors end, and the stage is shut down, when the session is closed
+      TaskExecutors.io().execute(new RawDataProcessor(session));
+      TaskExecutors.io().execute(new ViewDataProcessor(session));
+      DrawPanel panel = null;
+      BufferedImage image = null;
+      if (paint) {
+         panel = new DrawPanel(session);
+         panel.setSize(PANEL_SIZE, PANEL_SIZE);
+         image = new BufferedImage(PANEL_SIZE, PANEL_SIZE, BufferedImage.TYPE_INT_ARGB);
+      }
+      session.startedProcessing();
+
+      Random random = new Random(samples);
+      try {
+         for (int i = 0; i < samples; i++) {
+            int x = random.nextInt(PANEL_SIZE);
+            int y = random.nextInt(PANEL_SIZE);
+            session.addSubscriberData(Blackboard.EYE_DATA_LABEL + "~{'gaze_point_on_display_area': ("
+                  + x + ", " + y + ")}");
+            if (i % EMOTION_EVERY == 0) {
+               session.addSubscriberData(Blackboard.EMOTION_DATA_LABEL + "~" + syntheticEmotions(random));
+            }
+            if (paint && i % PAINT_EVERY == 0) {
+               paintOffscreen(panel, image);
+            }
+            if (i % PAUSE_EVERY == 0) {
+               // let the processors keep up instead of shedding most samples
+               Thread.sleep(1);
+            }
+         }
+         awaitIdle(session);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      } finally {
+         Blackboard.closeSession(session.getSessionId());
+      }
+      LOGGER.info("JIT warm-up with {} samples took {} ms", samples, (System.nanoTime() - start) / 1_000_000);
+   }
+
+   /**
+    * Waits until the emotion counts stop changing, i.e. the processors are done.
+    */
+   private void awaitIdle(Blackboard session) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+      long counted = -1;
+      while (System.currentTimeMillis() < deadline) {
+         Thread.sleep(SETTLE_MS);
+         long total = session.getFrequencySnapshot().total();
+         if (total == counted) {
+            return;
+         }
+         counted = total;
+      }
+   }
+
+   private static String syntheticEmotions(Random random) {
+      StringBuilder scores = new StringBuilder();
+      for (int e = 0; e < 6; e++) {
+         float score = random.nextInt(5) == 0 ? -1 : random.nextFloat();
+         scores.append(e == 0 ? "" : ", ").append(String.format(Locale.ROOT, "%.6f", score));
+      }
+      return scores.toString();
+   }
+
+   private static void paintOffscreen(DrawPanel panel, BufferedImage image) throws InterruptedException {
+      try {
+         SwingUtilities.invokeAndWait(() -> {
+            Graphics2D g = image.createGraphics();
+            try {
+               panel.paint(g);
+            } finally {
+               g.dispose();
+            }
+         });
+      } catch (InvocationTargetException e) {
+         LOGGER.warn("Offscreen paint failed during warm-up: " + e.getCause());
+      }
+   }
+
+   /**
+    * @param args command-line arguments
+    * @return the number of warm-up samples given with {@value #WARM_UP_OPTION},
+    *         0 if there is none or it is not a number of samples
+    */
+   public static int samplesFrom(String[] args) {
+      for (String arg : args) {
+         if (arg.startsWith(WARM_UP_OPTION)) {
+            String value = arg.substring(WARM_UP_OPTION.length());
+            try {
+               int samples = Integer.parseInt(value);
+               if (samples >= 0) {
+                  return samples;
+               }
+            } catch (NumberFormatException e) {
+               // reported below
+            }
+            LOGGER.warn("Ignoring {}{}, not a number of samples; starting without warm-up", WARM_UP_OPTION,
+                  value);
+            return 0;
+         }
+      }
+      return 0;
+   }
+}
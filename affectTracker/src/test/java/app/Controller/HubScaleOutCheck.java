@@ -0,0 +1,250 @@
+package app.Controller;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Acceptance check for scaling out over several {@link HubNode}s. It starts
+ * several hub JVMs and a {@link LoadGenerator} JVM against one MQTT broker and
+ * checks, from the hubs' logs, that
+ * <ul>
+ * <li>every simulated reader is owned by exactly one hub,</li>
+ * <li>every hub that owns readers counts their emotion frames,</li>
+ * <li>after one hub is stopped, its readers move to the remaining hubs while
+ * those keep all the readers they had.</li>
+ * </ul>
+ * Exits with status 1 when a check fails or no broker is reachable.
+ * <p>
+ * Needs a running broker, e.g. {@code mosquitto -p 1883}. Run after
+ * {@code mvn test-compile} from {@code affectTracker}:
+ * <pre>
+ * java -cp target/classes:target/test-classes:target/affectTracker-1.0-SNAPSHOT-jar-with-dependencies.jar \
+ *     app.Controller.HubScaleOutCheck --hubs=3 --readers=40 --broker=tcp://localhost:1883
+ * </pre>
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class HubScaleOutCheck {
+
+   private static final Pattern OWNS = Pattern.compile(
+         "Hub (\\S+) owns (\\d+) of (\\d+) readers, (\\d+) emotion frames counted");
+   private static final Pattern TOOK_OVER = Pattern.compile("Hub (\\S+) took over reader (\\S+)");
+   private static final Pattern RELEASED = Pattern.compile("Hub (\\S+) released reader (\\S+)");
+   // hubs report every ten heartbeats, so give them two reports
+   private static final long BALANCE_TIMEOUT_MS = 45_000;
+   private static final long POLL_MS = 500;
+   private static final String HUB_PREFIX = "scale-";
+
+   private static final List<Process> PROCESSES = new ArrayList<>();
+   private static int failures;
+
+   public static void main(String[] args) throws IOException, InterruptedException {
+      Properties settings = HeadlessMain.parseArguments(args);
+      int hubCount = Integer.parseInt(settings.getProperty("hubs", "3"));
+      int readerCount = Integer.parseInt(settings.getProperty("readers", "40"));
+      String broker = settings.getProperty("broker", "tcp://localhost:1883");
+      if (!reachable(broker)) {
+         System.out.println("FAILED: no MQTT broker at " + broker + ", start one first, e.g. mosquitto -p 1883");
+         System.exit(1);
+      }
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> PROCESSES.forEach(Process::destroyForcibly)));
+
+      Set<String> readers = new TreeSet<>();
+      for (int i = 0; i < readerCount; i++) {
+         readers.add("reader-" + i);
+      }
+      List<Hub> hubs = new ArrayList<>();
+      for (int i = 1; i <= hubCount; i++) {
+         hubs.add(new Hub(HUB_PREFIX + i, start("hub " + i, true, HubNode.class, "--hubId=" + HUB_PREFIX + i,
+               "--broker=" + broker)));
+      }
+      start("load generator", false, LoadGenerator.class, "--readers=" + readerCount, "--broker=" + broker);
+
+      boolean balanced = await(() -> partitioned(hubs, readers) && countingFrames(hubs));
+      print("with " + hubCount + " hubs", hubs);
+      if (!balanced) {
+         fail("the readers were not split over the hubs, with frames counted, within "
+               + BALANCE_TIMEOUT_MS / 1000 + " s");
+      } else if (hubCount > 1) {
+         Hub stopped = hubs.remove(hubs.size() - 1);
+         List<Set<String>> before = new ArrayList<>();
+         hubs.forEach(hub -> before.add(hub.owned()));
+         Set<String> moving = stopped.owned();
+         stopped.process.destroy(); // lets the hub announce that it leaves
+         stopped.process.waitFor(10, TimeUnit.SECONDS);
+         System.out.println("Stopped " + stopped.id + ", which owned " + moving.size() + " readers");
+
+         if (!await(() -> partitioned(hubs, readers))) {
+            fail("the readers of " + stopped.id + " did not move within " + BALANCE_TIMEOUT_MS / 1000 + " s");
+         }
+         print("after stopping " + stopped.id, hubs);
+         for (int i = 0; i < hubs.size(); i++) {
+            Set<String> lost = new TreeSet<>(before.get(i));
+            lost.removeAll(hubs.get(i).owned());
+            if (!lost.isEmpty()) {
+               fail(hubs.get(i).id + " gave up readers it should have kept: " + lost);
+            }
+         }
+      }
+
+      PROCESSES.forEach(Process::destroy);
+      if (failures > 0) {
+         System.out.println(failures + " checks failed");
+         System.exit(1);
+      }
+      System.out.println("All checks passed");
+      System.exit(0);
+   }
+
+   /**
+    * @return whether every reader is owned by exactly one of the hubs
+    */
+   private static boolean partitioned(List<Hub> hubs, Set<String> readers) {
+      Set<String> owned = new HashSet<>();
+      int total = 0;
+      for (Hub hub : hubs) {
+         Set<String> ownedByHub = hub.owned();
+         owned.addAll(ownedByHub);
+         total += ownedByHub.size();
+      }
+      return total == readers.size() && owned.equals(readers);
+   }
+
+   /**
+    * @return whether every hub owning readers reported counted emotion frames
+    */
+   private static boolean countingFrames(List<Hub> hubs) {
+      for (Hub hub : hubs) {
+         if (!hub.owned().isEmpty() && hub.frames() == 0) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private static boolean await(BooleanSupplier condition) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + BALANCE_TIMEOUT_MS;
+      while (System.currentTimeMillis() < deadline) {
+         if (condition.getAsBoolean()) {
+            return true;
+         }
+         Thread.sleep(POLL_MS);
+      }
+      return condition.getAsBoolean();
+   }
+
+   private static void print(String when, List<Hub> hubs) {
+      System.out.println("Readers per hub " + when + ":");
+      for (Hub hub : hubs) {
+         System.out.println("  " + hub.id + ": " + hub.owned().size() + " readers, " + hub.frames()
+               + " emotion frames at the last report");
+      }
+   }
+
+   private static boolean reachable(String broker) {
+      URI uri = URI.create(broker);
+      try (Socket socket = new Socket()) {
+         socket.connect(new InetSocketAddress(uri.getHost(), uri.getPort() < 0 ? 1883 : uri.getPort()), 2000);
+         return true;
+      } catch (IOException e) {
+         return false;
+      }
+   }
+
+   /**
+    * Starts a main class in a JVM of its own with the same class path.
+    *
+    * @param log whether the caller reads the output; it is discarded otherwise,
+    *            so the process never blocks on a full pipe
+    */
+   private static Process start(String name, boolean log, Class<?> main, String... args) throws IOException {
+      String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+      List<String> command = new ArrayList<>(List.of(java, "-cp", System.getProperty("java.class.path"),
+            main.getName()));
+      command.addAll(List.of(args));
+      ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+      if (!log) {
+         builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+      }
+      Process process = builder.start();
+      PROCESSES.add(process);
+      System.out.println("Started " + name + " (pid " + process.pid() + ")");
+      return process;
+   }
+
+   private static void fail(String message) {
+      failures++;
+      System.out.println("FAILED: " + message);
+   }
+
+   /**
+    * A hub process and what its log says about it.
+    */
+   private static class Hub {
+      private final String id;
+      private final Process process;
+      private final Set<String> owned = new HashSet<>();
+      private long frames;
+
+      Hub(String id, Process process) {
+         this.id = id;
+         this.process = process;
+         Thread reader = new Thread(this::readLog, "log-" + id);
+         reader.setDaemon(true);
+         reader.start();
+      }
+
+      synchronized Set<String> owned() {
+         return new TreeSet<>(owned);
+      }
+
+      synchronized long frames() {
+         return frames;
+      }
+
+      private void readLog() {
+         try (BufferedReader log = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            for (String line = log.readLine(); line != null; line = log.readLine()) {
+               parse(line);
+            }
+         } catch (IOException e) {
+            // the process ended
+         }
+      }
+
+      private synchronized void parse(String line) {
+         Matcher matcher = TOOK_OVER.matcher(line);
+         if (matcher.find() && matcher.group(1).equals(id)) {
+            owned.add(matcher.group(2));
+            return;
+         }
+         matcher = RELEASED.matcher(line);
+         if (matcher.find() && matcher.group(1).equals(id)) {
+            owned.remove(matcher.group(2));
+            return;
+         }
+         matcher = OWNS.matcher(line);
+         if (matcher.find() && matcher.group(1).equals(id)) {
+            frames = Long.parseLong(matcher.group(4));
+         }
+      }
+   }
+}
@@ -0,0 +1,189 @@
+package app.Model;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares the per-item emotion scoring of {@link RawDataProcessor} with the
+ * batch path, once with the scalar and once with the fastest available
+ * {@link EmotionScorer}, and checks that all paths pick the same prominent
+ * emotion and validity for every sample. Exits with status 1 on a mismatch.
+ * <p>
+ * Each path is timed twice: with parsing, as the processor runs it, and on
+ * scores parsed beforehand, which isolates the scoring itself.
+ * <p>
+ * Run after {@code mvn test-compile} from {@code affectTracker}:
+ * <pre>
+ * java --add-modules jdk.incubator.vector -cp target/classes:target/test-classes app.Model.EmotionScoringBenchmark [samples] [batchSize]
+ * </pre>
+ * Without {@code --add-modules} the batch path falls back to the scalar scorer.
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class EmotionScoringBenchmark {
+
+   private static final int ROUNDS = 15;
+   private static final int WARM_UP_ROUNDS = 5;
+
+   public static void main(String[] args) {
+      int samples = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 16;
+      int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+      String[] payloads = payloads(samples, new Random(42));
+
+      int[] expectedProminent = new int[samples];
+      boolean[] expectedValid = new boolean[samples];
+      perItem(payloads, expectedProminent, expectedValid);
+
+      EmotionScorer scalar = new ScalarEmotionScorer();
+      EmotionScorer fastest = EmotionScorer.create();
+      int[] prominent = new int[samples];
+      boolean[] valid = new boolean[samples];
+      boolean agree = true;
+      for (EmotionScorer scorer : new EmotionScorer[] { scalar, fastest }) {
+         batch(payloads, batchSize, scorer, prominent, valid);
+         if (!Arrays.equals(prominent, expectedProminent) || !Arrays.equals(valid, expectedValid)) {
+            System.out.println(scorer.getClass().getSimpleName() + " disagrees with the per-item path");
+            agree = false;
+         }
+      }
+
+      report("per-item", samples, () -> perItem(payloads, prominent, valid));
+      report("batch " + batchSize + ", " + scalar.getClass().getSimpleName(), samples,
+            () -> batch(payloads, batchSize, scalar, prominent, valid));
+      report("batch " + batchSize + ", " + fastest.getClass().getSimpleName(), samples,
+            () -> batch(payloads, batchSize, fastest, prominent, valid));
+
+      // scoring only, on the scores of the first batch
+      int count = Math.min(batchSize, samples);
+      float[] rows = new float[EmotionScorer.EMOTION_COUNT * count];
+      float[] columns = new float[EmotionScorer.EMOTION_COUNT * count];
+      for (int i = 0; i < count; i++) {
+         PayloadParser.parseEmotions(payloads[i], rows, i * EmotionScorer.EMOTION_COUNT, 1,
+               EmotionScorer.EMOTION_COUNT);
+         PayloadParser.parseEmotions(payloads[i], columns, i, count, EmotionScorer.EMOTION_COUNT);
+      }
+      int repeat = Math.max(1, samples / count);
+      report("scoring only, per-item", repeat * count, () -> {
+         for (int r = 0; r < repeat; r++) {
+            scoreRows(rows, count, prominent, valid);
+         }
+      });
+      for (EmotionScorer scorer : new EmotionScorer[] { scalar, fastest }) {
+         report("scoring only, " + scorer.getClass().getSimpleName(), repeat * count, () -> {
+            for (int r = 0; r < repeat; r++) {
+               scorer.score(columns, count, count, prominent, valid);
+            }
+         });
+      }
+      if (!agree) {
+         System.exit(1);
+      }
+   }
+
+   /**
+    * Scores one sample at a time, as {@link RawDataProcessor} does without a
+    * batch size.
+    */
+   private static void perItem(String[] payloads, int[] prominent, boolean[] valid) {
+      float[] scores = new float[EmotionScorer.EMOTION_COUNT];
+      for (int i = 0; i < payloads.length; i++) {
+         int count = PayloadParser.parseEmotions(payloads[i], scores, 0, 1, EmotionScorer.EMOTION_COUNT);
+         int maxIndex = 0;
+         boolean allValid = true;
+         for (int e = 0; e < count; e++) {
+            allValid &= (scores[e] >= 0 && scores[e] <= 1) || scores[e] == -1;
+            if (scores[e] > scores[maxIndex]) {
+               maxIndex = e;
+            }
+         }
+         prominent[i] = scores[maxIndex] == -1 ? EmotionScorer.NO_EMOTION : maxIndex;
+         valid[i] = allValid;
+      }
+   }
+
+   /**
+    * The scoring loop of the per-item path over row-major scores.
+    */
+   private static void scoreRows(float[] rows, int count, int[] prominent, boolean[] valid) {
+      for (int i = 0; i < count; i++) {
+         int offset = i * EmotionScorer.EMOTION_COUNT;
+         int maxIndex = 0;
+         boolean allValid = true;
+         for (int e = 0; e < EmotionScorer.EMOTION_COUNT; e++) {
+            float score = rows[offset + e];
+            allValid &= (score >= 0 && score <= 1) || score == -1;
+            if (score > rows[offset + maxIndex]) {
+               maxIndex = e;
+            }
+         }
+         prominent[i] = rows[offset + maxIndex] == -1 ? EmotionScorer.NO_EMOTION : maxIndex;
+         valid[i] = allValid;
+      }
+   }
+
+   /**
+    * Parses the samples into column-major batches and scores each batch at
+    * once, as {@link RawDataProcessor} does with a batch size.
+    */
+   private static void batch(String[] payloads, int batchSize, EmotionScorer scorer, int[] prominent,
+         boolean[] valid) {
+      float[] scores = new float[EmotionScorer.EMOTION_COUNT * batchSize];
+      int[] batchProminent = new int[batchSize];
+      boolean[] batchValid = new boolean[batchSize];
+      for (int start = 0; start < payloads.length; start += batchSize) {
+         int count = Math.min(batchSize, payloads.length - start);
+         for (int i = 0; i < count; i++) {
+            PayloadParser.parseEmotions(payloads[start + i], scores, i, count, EmotionScorer.EMOTION_COUNT);
+         }
+         scorer.score(scores, count, count, batchProminent, batchValid);
+         System.arraycopy(batchProminent, 0, prominent, start, count);
+         System.arraycopy(batchValid, 0, valid, start, count);
+      }
+   }
+
+   private static void report(String name, int samples, Runnable run) {
+      for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+         run.run();
+      }
+      long[] nanos = new long[ROUNDS];
+      for (int i = 0; i < ROUNDS; i++) {
+         long start = System.nanoTime();
+         run.run();
+         nanos[i] = System.nanoTime() - start;
+      }
+      Arrays.sort(nanos);
+      System.out.printf("%-40s median %7.1f ns/sample, best %7.1f ns/sample%n", name,
+            (double) nanos[ROUNDS / 2] / samples, (double) nanos[0] / samples);
+   }
+
+   /**
+    * Six scores per sample: mostly valid scores, some inactive emotions and a
+    * few out of range values.
+    */
+   private static String[] payloads(int samples, Random random) {
+      String[] payloads = new String[samples];
+      StringBuilder payload = new StringBuilder();
+      for (int i = 0; i < samples; i++) {
+         payload.setLength(0);
+         for (int e = 0; e < EmotionScorer.EMOTION_COUNT; e++) {
+            if (e > 0) {
+               payload.append(", ");
+            }
+            int kind = random.nextInt(50);
+            if (kind < 10) {
+               payload.append("-1.0");
+            } else if (kind == 10) {
+               payload.append("1.5");
+            } else {
+               payload.append(String.format(Locale.ROOT, "%.6f", random.nextFloat()));
+            }
+         }
+         payloads[i] = payload.toString();
+      }
+      return payloads;
+   }
+}
@@ -0,0 +1,248 @@
+package app.Model;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import app.Data.Emotion;
+import app.Data.HighlightColumns;
+import app.Data.ProcessedDataObject;
+
+/**
+ * Compares finding consolidation targets through the {@link HighlightIndex}
+ * with the linear scan of the current highlights that it replaced, and checks
+ * that the {@link ViewDataProcessor} picks the same target as the linear scan
+ * for every sample. Exits with status 1 on a mismatch.
+ * <p>
+ * The checks feed each stream of gaze samples through a real
+ * {@link ViewDataProcessor} on a scratch session and the linear scan side by
+ * side: the sample is added, the first highlight in list order within the
+ * threshold on both axes is found, which may be the new one itself, and grown
+ * by 50. One check commits the highlights with an emotion update midway, the
+ * other changes the threshold and lets the processor drop the oldest
+ * highlights to stay within a small memory budget, so the processor's index
+ * is rebuilt after each of these.
+ * <p>
+ * Run after {@code mvn test-compile} from {@code affectTracker}:
+ * <pre>
+ * java -cp target/classes:target/test-classes:target/affectTracker-1.0-SNAPSHOT-jar-with-dependencies.jar \
+ *     app.Model.HighlightGridBenchmark [highlights...]
+ * </pre>
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class HighlightGridBenchmark {
+
+   private static final int THRESHOLD = 50;
+   private static final int HIGHLIGHT_LENGTH = 100;
+   private static final int GROWTH = 50;
+   private static final int ROUNDS = 5;
+   private static final int WARM_UP_ROUNDS = 2;
+   private static int failures;
+
+   public static void main(String[] args) throws InterruptedException {
+      int[] sizes = args.length > 0
+            ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+            : new int[] { 10_000, 50_000 };
+
+      for (int size : sizes) {
+         int[][] reading = readingOrder(size, new Random(42));
+         int[][] random = randomDense(size, new Random(42));
+         check("reading order", reading, false);
+         check("random dense", random, false);
+         check("reading order", reading, true);
+         check("random dense", random, true);
+         report("reading order", reading, false);
+         report("reading order", reading, true);
+         report("random dense", random, false);
+         report("random dense", random, true);
+      }
+      if (failures > 0) {
+         System.out.println(failures + " checks failed");
+         System.exit(1);
+      }
+      System.out.println("All checks passed");
+      System.exit(0);
+   }
+
+   /**
+    * Feeds the samples to a {@link ViewDataProcessor} and the linear scan and
+    * compares the grown highlight after every sample and all highlights at the
+    * end.
+    *
+    * @param rebuilds false to commit the highlights halfway, true to change
+    *                 the threshold after a third of the samples and keep only
+    *                 about half of them within the memory budget
+    */
+   private static void check(String name, int[][] samples, boolean rebuilds) throws InterruptedException {
+      String checkName = name + (rebuilds ? " with rebuilds" : " with a commit");
+      int count = samples[0].length;
+      Blackboard session = Blackboard.getSession("grid-check-" + System.nanoTime());
+      session.setHighlightLength(HIGHLIGHT_LENGTH);
+      session.setThresholdLength(THRESHOLD);
+      if (rebuilds) {
+         session.setMemoryBudget(2L * Blackboard.HIGHLIGHT_BYTES * (count / 2));
+      }
+      ViewDataProcessor processor = new ViewDataProcessor(session);
+      HighlightColumns expected = new HighlightColumns();
+      int trims = 0;
+      try {
+         for (int s = 0; s < count; s++) {
+            if (rebuilds && s == count / 3) {
+               session.setThresholdLength(THRESHOLD / 2 + 7);
+            }
+            if (!rebuilds && s == count / 2) {
+               handle(processor, -1, -1, Emotion.INTEREST);
+               expected = new HighlightColumns();
+            }
+            int target = consolidateLinear(expected, samples[0][s], samples[1][s], session.getThresholdLength());
+            handle(processor, samples[0][s], samples[1][s], Emotion.NONE);
+
+            HighlightColumns actual = session.getHighlightList();
+            if (actual.size() < expected.size()) {
+               // the processor dropped the oldest highlights
+               int dropped = expected.size() - actual.size();
+               expected.removeFirst(dropped);
+               target -= dropped;
+               trims++;
+            }
+            if (actual.size() != expected.size()
+                  || target >= 0 && actual.length(target) != expected.length(target)) {
+               fail(checkName + ": sample " + s + " was not merged into " + target);
+               return;
+            }
+         }
+         compare(checkName, expected, session.getHighlightList());
+         if (rebuilds && trims == 0) {
+            fail(checkName + ": no highlights were dropped, the trimming was not checked");
+         }
+      } finally {
+         Blackboard.closeSession(session.getSessionId());
+      }
+   }
+
+   private static void handle(ViewDataProcessor processor, int x, int y, Emotion emotion)
+         throws InterruptedException {
+      ProcessedDataObject data = ProcessedDataObject.obtain().set(x, y, emotion, null, 0, 1, 0);
+      try {
+         processor.handleProcessedData(data);
+      } finally {
+         data.recycle();
+      }
+   }
+
+   private static void compare(String name, HighlightColumns expected, HighlightColumns actual) {
+      if (expected.size() != actual.size()) {
+         fail(name + ": " + actual.size() + " highlights instead of " + expected.size());
+         return;
+      }
+      for (int i = 0; i < expected.size(); i++) {
+         if (expected.x(i) != actual.x(i) || expected.y(i) != actual.y(i)
+               || expected.length(i) != actual.length(i)) {
+            fail(name + ": highlight " + i + " differs");
+            return;
+         }
+      }
+      System.out.printf(Locale.ROOT, "%-34s %6d highlights, same targets%n", name, expected.size());
+   }
+
+   /**
+    * The consolidation before the grid: scans the list from the start.
+    *
+    * @return the position of the grown highlight
+    */
+   private static int consolidateLinear(HighlightColumns highlights, int x, int y, int threshold) {
+      highlights.add(x, y, HIGHLIGHT_LENGTH, 0);
+      for (int i = 0; i < highlights.size(); i++) {
+         if (Math.abs(highlights.x(i) - x) <= threshold && Math.abs(highlights.y(i) - y) <= threshold) {
+            highlights.grow(i, GROWTH);
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * The consolidation of {@link ViewDataProcessor}: asks the index for the
+    * target and tells it about the growth.
+    *
+    * @return the position of the grown highlight
+    */
+   private static int consolidateIndexed(HighlightColumns highlights, HighlightIndex index, int x, int y,
+         int threshold) {
+      highlights.add(x, y, HIGHLIGHT_LENGTH, 0);
+      int i = index.firstWithin(highlights, x, y, threshold);
+      if (i >= 0) {
+         int oldX = highlights.x(i);
+         highlights.grow(i, GROWTH);
+         index.moved(i, oldX, highlights.y(i), highlights.x(i));
+      }
+      return i;
+   }
+
+   private static void report(String name, int[][] samples, boolean grid) {
+      long checksum = 0;
+      for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+         checksum += run(samples, grid);
+      }
+      long[] nanos = new long[ROUNDS];
+      for (int i = 0; i < ROUNDS; i++) {
+         long start = System.nanoTime();
+         checksum += run(samples, grid);
+         nanos[i] = System.nanoTime() - start;
+      }
+      Arrays.sort(nanos);
+      int count = samples[0].length;
+      System.out.printf(Locale.ROOT, "%-14s %6d highlights, %-6s median %8.3f us/sample, best %8.3f us/sample"
+            + " (checksum %d)%n", name, count, grid ? "grid" : "linear", nanos[ROUNDS / 2] / 1e3 / count,
+            nanos[0] / 1e3 / count, checksum);
+   }
+
+   private static long run(int[][] samples, boolean grid) {
+      HighlightColumns highlights = new HighlightColumns();
+      HighlightIndex index = new HighlightIndex();
+      long checksum = 0;
+      for (int s = 0; s < samples[0].length; s++) {
+         checksum += grid
+               ? consolidateIndexed(highlights, index, samples[0][s], samples[1][s], THRESHOLD)
+               : consolidateLinear(highlights, samples[0][s], samples[1][s], THRESHOLD);
+      }
+      return checksum;
+   }
+
+   /**
+    * Gaze moving along the lines of a long document: steps of about 60 pixels
+    * to the right, so only some samples fall within the threshold of the
+    * previous one, and a new line every 30 samples.
+    */
+   private static int[][] readingOrder(int count, Random random) {
+      int[][] samples = new int[2][count];
+      for (int s = 0; s < count; s++) {
+         int line = s / 30;
+         samples[0][s] = 40 + (s % 30) * 60 + random.nextInt(21) - 10;
+         samples[1][s] = 20 + line * 30 + random.nextInt(11) - 5;
+      }
+      return samples;
+   }
+
+   /**
+    * Gaze anywhere on a 1920 x 1080 display, so most samples fall near one of
+    * the first highlights.
+    */
+   private static int[][] randomDense(int count, Random random) {
+      int[][] samples = new int[2][count];
+      for (int s = 0; s < count; s++) {
+         samples[0][s] = random.nextInt(1920);
+         samples[1][s] = random.nextInt(1080);
+      }
+      return samples;
+   }
+
+   private static void fail(String message) {
+      failures++;
+      System.out.println("FAILED: " + message);
+   }
+}
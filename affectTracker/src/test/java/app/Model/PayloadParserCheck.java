@@ -0,0 +1,136 @@
+package app.Model;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Checks the {@link PayloadParser} against well-formed and malformed payloads
+ * and measures how many bytes parsing allocates per sample. Parsing is meant
+ * not to allocate, so the check fails if a sample costs more than
+ * {@value #MAX_BYTES_PER_SAMPLE} bytes on average. Exits with status 1 when a
+ * check fails.
+ * <p>
+ * Run after {@code mvn test-compile} from {@code affectTracker}:
+ * <pre>
+ * java -cp target/classes:target/test-classes app.Model.PayloadParserCheck [samples]
+ * </pre>
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class PayloadParserCheck {
+
+   // allows for the odd allocation of the measuring itself
+   private static final double MAX_BYTES_PER_SAMPLE = 1.0;
+   private static int failures;
+
+   public static void main(String[] args) {
+      int samples = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+      checkGaze("{'gaze_point_on_display_area': (335, 247)}", 335, 247);
+      checkGaze("{'gaze_point_on_display_area': ( 0 ,0 ) }", 0, 0);
+      checkGaze("{'gaze_point_on_display_area': (-5, +7)}", -5, 7);
+      checkInvalidGaze("{'gaze_point_on_display_area': (1, 2, -3)}");
+      checkInvalidGaze("{'gaze_point_on_display_area': (1,2,abc)}");
+      checkInvalidGaze("{'gaze_point_on_display_area': (1, 2,)}");
+      checkInvalidGaze("{'gaze_point_on_display_area': (1)}");
+      checkInvalidGaze("{'gaze_point_on_display_area': (1 2, 3)}");
+      checkInvalidGaze("{'gaze_point_on_display_area': (1, x)}");
+      checkInvalidGaze("{'gaze_point_on_display_area': (99999999999, 1)}");
+      checkInvalidGaze("no separator");
+
+      checkEmotions("0.788972, -1.0, 1.0E-4", 0.788972f, -1f, 1.0E-4f);
+      checkEmotions(" 1 ,0.5 ", 1f, 0.5f);
+      checkEmotions("0.1,0.2,0.3,0.4,0.5,0.6", 0.1f, 0.2f, 0.3f, 0.4f, 0.5f, 0.6f);
+      checkInvalidEmotions("0.1, abc");
+      checkInvalidEmotions("0.1,,0.2");
+      checkInvalidEmotions("1.0E");
+
+      checkAllocation(samples);
+      if (failures > 0) {
+         System.out.println(failures + " checks failed");
+         System.exit(1);
+      }
+      System.out.println("All checks passed");
+   }
+
+   private static void checkGaze(String payload, int x, int y) {
+      long gaze = PayloadParser.parseGaze(payload);
+      if (gaze == PayloadParser.INVALID_GAZE || PayloadParser.gazeX(gaze) != x || PayloadParser.gazeY(gaze) != y) {
+         fail("expected (" + x + ", " + y + ") from " + payload);
+      }
+   }
+
+   private static void checkInvalidGaze(String payload) {
+      if (PayloadParser.parseGaze(payload) != PayloadParser.INVALID_GAZE) {
+         fail("expected " + payload + " to be rejected");
+      }
+   }
+
+   private static void checkEmotions(String payload, float... expected) {
+      float[] scores = new float[expected.length];
+      int count = PayloadParser.parseEmotions(payload, scores, 0, 1, scores.length);
+      if (count != expected.length) {
+         fail("expected " + expected.length + " scores from " + payload + ", got " + count);
+         return;
+      }
+      for (int i = 0; i < count; i++) {
+         if (scores[i] != Float.parseFloat(Float.toString(expected[i]))) {
+            fail("expected " + expected[i] + " at " + i + " of " + payload + ", got " + scores[i]);
+         }
+      }
+   }
+
+   private static void checkInvalidEmotions(String payload) {
+      if (PayloadParser.parseEmotions(payload, new float[6], 0, 1, 6) != PayloadParser.INVALID_EMOTIONS) {
+         fail("expected " + payload + " to be rejected");
+      }
+   }
+
+   /**
+    * Parses a gaze and an emotion payload per sample, first to warm the parser
+    * up, then while counting the bytes the thread allocates.
+    */
+   private static void checkAllocation(int samples) {
+      if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)
+            || !threads.isThreadAllocatedMemorySupported()) {
+         System.out.println("Allocation counting not supported by this JVM, skipped");
+         return;
+      }
+      threads.setThreadAllocatedMemoryEnabled(true);
+      String[] gaze = new String[64];
+      String[] emotions = new String[64];
+      for (int i = 0; i < gaze.length; i++) {
+         gaze[i] = "{'gaze_point_on_display_area': (" + (i * 37 % 1920) + ", " + (i * 53 % 1080) + ")}";
+         emotions[i] = String.format(Locale.ROOT, "%.6f, -1.0, %.6f, 0.0, 1.0E-4, %.6f", i / 64.0, 1 - i / 64.0,
+               i / 128.0);
+      }
+      float[] scores = new float[6];
+      long checksum = parse(gaze, emotions, scores, samples);
+      long before = threads.getCurrentThreadAllocatedBytes();
+      checksum += parse(gaze, emotions, scores, samples);
+      long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+      double perSample = (double) allocated / samples;
+      System.out.printf(Locale.ROOT, "Parsing allocated %d bytes for %d samples, %.4f bytes/sample (checksum %d)%n",
+            allocated, samples, perSample, checksum);
+      if (perSample > MAX_BYTES_PER_SAMPLE) {
+         fail("parsing allocates " + perSample + " bytes per sample");
+      }
+   }
+
+   private static long parse(String[] gaze, String[] emotions, float[] scores, int samples) {
+      long checksum = 0;
+      for (int i = 0; i < samples; i++) {
+         checksum += PayloadParser.parseGaze(gaze[i & 63]);
+         checksum += PayloadParser.parseEmotions(emotions[i & 63], scores, 0, 1, scores.length);
+      }
+      return checksum + (long) scores[0];
+   }
+
+   private static void fail(String message) {
+      failures++;
+      System.out.println("FAILED: " + message);
+   }
+}
@@ -0,0 +1,109 @@
+package app.Model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import app.Data.Emotion;
+import app.Data.ProcessedDataObject;
+
+/**
+ * Checks which {@link ProcessedDataObject}s the {@link RawDataProcessor}
+ * publishes for valid and invalid samples, processed one by one and in
+ * batches. Both modes must publish the same objects: a gaze point on its own,
+ * and an emotion update only for scores within range with an active emotion,
+ * whether the emotion sample came with gaze or alone. Exits with status 1 when
+ * a check fails.
+ * <p>
+ * Run after {@code mvn test-compile} from {@code affectTracker}:
+ * <pre>
+ * java -cp target/classes:target/test-classes:target/affectTracker-1.0-SNAPSHOT-jar-with-dependencies.jar \
+ *     app.Model.RawDataProcessorCheck
+ * </pre>
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class RawDataProcessorCheck {
+
+   private static final String GAZE = "{'gaze_point_on_display_area': (120, 80)}";
+   private static final int BATCH_SIZE = 8;
+   // a batch waits for gaze before it drains the emotion queue
+   private static final long COLLECT_MS = 3 * Blackboard.EYE_TIMEOUT_IN_MS;
+   private static int failures;
+
+   public static void main(String[] args) throws InterruptedException {
+      for (int batchSize : new int[] { 1, BATCH_SIZE }) {
+         check(batchSize, "valid emotion alone", null, "0.1, 0.9, -1", "emotion ENGAGEMENT");
+         check(batchSize, "valid emotion with gaze", GAZE, "0.1, 0.9, -1", "gaze 120,80", "emotion ENGAGEMENT");
+         check(batchSize, "out of range emotion alone", null, "5.0, 0.1");
+         check(batchSize, "out of range emotion with gaze", GAZE, "5.0, 0.1", "gaze 120,80");
+         check(batchSize, "inactive emotion alone", null, "-1, -1, -1, -1, -1, -1");
+         check(batchSize, "inactive emotion with gaze", GAZE, "-1, -1, -1, -1, -1, -1", "gaze 120,80");
+      }
+      if (failures > 0) {
+         System.out.println(failures + " checks failed");
+         System.exit(1);
+      }
+      System.out.println("All checks passed");
+      System.exit(0);
+   }
+
+   /**
+    * Queues the samples in a fresh session before its processor starts, so a
+    * batch holds both of them, and compares what the processor publishes.
+    *
+    * @param batchSize 1 to process the samples one by one
+    * @param gaze      raw gaze payload, or null
+    * @param emotion   raw emotion payload
+    * @param expected  the published objects, in any order
+    */
+   private static void check(int batchSize, String name, String gaze, String emotion, String... expected)
+         throws InterruptedException {
+      Blackboard session = Blackboard.getSession("raw-check-" + System.nanoTime());
+      session.setProcessingBatchSize(batchSize);
+      if (gaze != null) {
+         session.addSubscriberData(Blackboard.EYE_DATA_LABEL + "~" + gaze);
+      }
+      session.addSubscriberData(Blackboard.EMOTION_DATA_LABEL + "~" + emotion);
+      TaskExecutors.io().execute(new RawDataProcessor(session));
+      session.startedProcessing();
+
+      List<String> published = new ArrayList<>();
+      long deadline = System.currentTimeMillis() + COLLECT_MS;
+      while (System.currentTimeMillis() < deadline) {
+         ProcessedDataObject data = session.getFromProcessedDataObjectQueue();
+         if (data != null) {
+            published.add(describe(data));
+            data.recycle();
+         }
+      }
+      Blackboard.closeSession(session.getSessionId());
+
+      String mode = batchSize == 1 ? "per item" : "batch";
+      // the emotion update may overtake the gaze point
+      List<String> sortedPublished = new ArrayList<>(published);
+      List<String> sortedExpected = new ArrayList<>(List.of(expected));
+      sortedPublished.sort(null);
+      sortedExpected.sort(null);
+      if (!sortedPublished.equals(sortedExpected)) {
+         fail(mode + ", " + name + ": published " + published + " instead of " + List.of(expected));
+      } else {
+         System.out.printf("%-9s %-32s %s%n", mode, name, published);
+      }
+   }
+
+   private static String describe(ProcessedDataObject data) {
+      if (data.xCoord() == -1 && data.yCoord() == -1) {
+         return "emotion " + data.prominentEmotion();
+      }
+      return "gaze " + data.xCoord() + "," + data.yCoord()
+            + (data.prominentEmotion() == Emotion.NONE ? "" : " " + data.prominentEmotion());
+   }
+
+   private static void fail(String message) {
+      failures++;
+      System.out.println("FAILED: " + message);
+   }
+}
@@ -0,0 +1,160 @@
+package app.Model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import app.View.WarmUp;
+
+/**
+ * Compares the processing latency of the first seconds of live data with and
+ * without a JIT {@link WarmUp}. Every run needs a cold JVM, so the benchmark
+ * starts a fresh JVM per run, alternating between cold and warmed-up runs,
+ * and reports the p50, p99 and maximum latency of each run and the median p99
+ * of both. Exits with status 1 if a run fails.
+ * <p>
+ * A run optionally warms up, then feeds synthetic gaze samples, with an
+ * emotion sample every tenth, into a fresh session at a fixed rate. The
+ * latency is the time from a sample being taken off the input queue until
+ * the {@link ViewDataProcessor} is done with it, recorded by the processor's
+ * {@link LatencyRecorder} over the window.
+ * <p>
+ * Run after {@code mvn test-compile} from {@code affectTracker}:
+ * <pre>
+ * java -cp target/classes:target/test-classes:target/affectTracker-1.0-SNAPSHOT-jar-with-dependencies.jar \
+ *     app.Model.WarmUpLatencyBenchmark [runs] [warmUpSamples] [windowSeconds] [samplesPerSecond]
+ * </pre>
+ *
+ * @author Andrew Estrada
+ * @author Sean Sponsler
+ * @author Xiuyuan Qiu
+ * @version 1.0
+ */
+public class WarmUpLatencyBenchmark {
+
+   private static final String RUN = "run";
+   private static final String RESULT = "RESULT";
+   private static final int EMOTION_EVERY = 10;
+   private static final long REPORT_TIMEOUT_MS = 10_000;
+
+   public static void main(String[] args) throws Exception {
+      if (args.length > 0 && args[0].equals(RUN)) {
+         run(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+         return;
+      }
+      int runs = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+      int warmUpSamples = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+      int windowSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+      int rate = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+
+      double[] coldP99 = new double[runs];
+      double[] warmP99 = new double[runs];
+      boolean failed = false;
+      for (int i = 0; i < runs; i++) {
+         for (boolean warm : new boolean[] { false, true }) {
+            double[] result = fork(warm ? warmUpSamples : 0, windowSeconds, rate);
+            if (result == null) {
+               System.out.println("FAILED: " + (warm ? "warmed-up" : "cold") + " run " + (i + 1));
+               failed = true;
+               continue;
+            }
+            System.out.printf(Locale.ROOT, "%-10s run %d: %6.0f samples, p50 %7.3f ms, p99 %7.3f ms, max %7.3f ms%n",
+                  warm ? "warmed-up" : "cold", i + 1, result[0], result[1], result[2], result[3]);
+            (warm ? warmP99 : coldP99)[i] = result[2];
+         }
+      }
+      if (failed) {
+         System.exit(1);
+      }
+      System.out.printf(Locale.ROOT, "median p99 over the first %d s: cold %.3f ms, warmed-up with %d samples"
+            + " %.3f ms%n", windowSeconds, median(coldP99), warmUpSamples, median(warmP99));
+   }
+
+   /**
+    * Runs one measurement in a fresh JVM with the same class path.
+    *
+    * @return samples, p50, p99 and maximum latency, or null if the run failed
+    */
+   private static double[] fork(int warmUpSamples, int windowSeconds, int rate)
+         throws IOException, InterruptedException {
+      String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+      List<String> command = new ArrayList<>(List.of(java, "-Djava.awt.headless=true", "-cp",
+            System.getProperty("java.class.path"), WarmUpLatencyBenchmark.class.getName(), RUN,
+            Integer.toString(warmUpSamples), Integer.toString(windowSeconds), Integer.toString(rate)));
+      Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+      double[] result = null;
+      try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+         for (String line = output.readLine(); line != null; line = output.readLine()) {
+            if (line.startsWith(RESULT)) {
+               result = Arrays.stream(line.substring(RESULT.length()).trim().split(" "))
+                     .mapToDouble(Double::parseDouble).toArray();
+            }
+         }
+      }
+      return process.waitFor() == 0 ? result : null;
+   }
+
+   /**
+    * The measurement itself, in the forked JVM.
+    */
+   private static void run(int warmUpSamples, int windowSeconds, int rate) throws InterruptedException {
+      if (warmUpSamples > 0) {
+         new WarmUp(warmUpSamples, false).run();
+      }
+      Blackboard session = Blackboard.getSession("latency-" + System.nanoTime());
+      ViewDataProcessor viewDataProcessor = new ViewDataProcessor(session,
+            new LatencyRecorder("Benchmark", TimeUnit.SECONDS.toNanos(windowSeconds)));
+      TaskExecutors.io().execute(new RawDataProcessor(session));
+      TaskExecutors.io().execute(viewDataProcessor);
+      session.startedProcessing();
+
+      Random random = new Random(42);
+      long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+      long next = System.nanoTime();
+      long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(windowSeconds) + REPORT_TIMEOUT_MS;
+      LatencyRecorder.Report report = null;
+      for (int i = 0; report == null && System.currentTimeMillis() < deadline; i++) {
+         session.addSubscriberData(Blackboard.EYE_DATA_LABEL + "~{'gaze_point_on_display_area': ("
+               + random.nextInt(1920) + ", " + random.nextInt(1080) + ")}");
+         if (i % EMOTION_EVERY == 0) {
+            session.addSubscriberData(Blackboard.EMOTION_DATA_LABEL + "~" + emotions(random));
+         }
+         next += interval;
+         long wait = next - System.nanoTime();
+         if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+         }
+         report = viewDataProcessor.getLatencyReport();
+      }
+      Blackboard.closeSession(session.getSessionId());
+      if (report == null) {
+         System.out.println("No latency report within the window");
+         System.exit(1);
+      }
+      System.out.printf(Locale.ROOT, "%s %d %f %f %f%n", RESULT, report.samples(), report.p50Millis(),
+            report.p99Millis(), report.maxMillis());
+      System.exit(0);
+   }
+
+   private static String emotions(Random random) {
+      StringBuilder scores = new StringBuilder();
+      for (int e = 0; e < 6; e++) {
+         float score = random.nextInt(5) == 0 ? -1 : random.nextFloat();
+         scores.append(e == 0 ? "" : ", ").append(String.format(Locale.ROOT, "%.6f", score));
+      }
+      return scores.toString();
+   }
+
+   private static double median(double[] values) {
+      double[] sorted = values.clone();
+      Arrays.sort(sorted);
+      return sorted[sorted.length / 2];
+   }
+}
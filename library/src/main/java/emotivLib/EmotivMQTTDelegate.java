@@ -25,6 +25,12 @@ public class EmotivMQTTDelegate {
     public EmotivMQTTDelegate(String broker, String clientId, String topic, Encoder encoder) {
         this.topic = topic;
         mqttPublisher = new ThePublisherMQTT(broker,  clientId, encoder);
+    }
+
+    /**
+     * Connects to the broker. Emotions arriving before the connection exists are not published.
+     */
+    public void connect() {
         mqttPublisher.connect();
     }
 
@@ -23,6 +23,10 @@ public class EmotivServer implements Runnable {
         mqttDelegate = new EmotivMQTTDelegate(broker, clientId, topic, encoder);
     }
 
+    /**
+     * Starts the connection to Cortex, which completes on the socket's own thread, and connects to
+     * the broker meanwhile, so neither waits for the other.
+     */
     @Override
     public void run() {
         try {
@@ -33,6 +37,7 @@ public class EmotivServer implements Runnable {
         } catch (Exception e) {
             logger.error("Emotiv Server issue:{}", e.getMessage());
         }
+        mqttDelegate.connect();
     }
 
 }
\ No newline at end of file
@@ -3,6 +3,8 @@ package mqttLib;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import org.eclipse.paho.client.mqttv3.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,7 +22,7 @@ import org.slf4j.LoggerFactory;
  * When running within a Thread, TheSubscriberMQTT simply waits for 'mail' from
  * the broker
  * and processes it by adding the prefix to the message and sending it to its
- * destination.
+ * destination. Topics can be added and removed while it is running.
  * 
  * Code Metrics:
  * - Number of Methods: 6
@@ -28,7 +30,7 @@ import org.slf4j.LoggerFactory;
  * - Cyclomatic Complexity: 5 (due to try-catch and loop)
  * - Number of Conditional Branches: 5 (in `run`, `connectionLost`,
  * `messageArrived`, and `stopSubscriber` methods)
- * - Number of Loops: 1 (in `run` method)
+ * - Number of Loops: 1 (over the topics in `run` method)
  * </p>
  */
 public class TheSubscriberMQTT extends PropertyChangeSupport implements Runnable, MqttCallback {
@@ -45,14 +47,15 @@ public class TheSubscriberMQTT extends PropertyChangeSupport implements Runnable
 
    private final String broker;
    private final String clientID;
-   private boolean running = true;
+   private volatile MqttClient client;
+   private final CountDownLatch stopped = new CountDownLatch(1);
 
    public TheSubscriberMQTT(String broker, String clientID, Map<String, String> topicAndPrefixPairs,
          PropertyChangeListener listener) {
       super(new Object());
       this.broker = broker;
       this.clientID = clientID;
-      this.topicAndPrefixPairs = topicAndPrefixPairs;
+      this.topicAndPrefixPairs = new ConcurrentHashMap<>(topicAndPrefixPairs);
       this.addPropertyChangeListener(CLIENT_PROPERTY_LABEL, listener);
       this.addPropertyChangeListener(REPORT_ERROR_LABEL, listener);
       this.addPropertyChangeListener(MQTT_CONNECTED_LABEL, listener);
@@ -65,6 +68,7 @@ public class TheSubscriberMQTT extends PropertyChangeSupport implements Runnable
          client.setCallback(this);
          log.debug("right before connecting to broker");
          client.connect();
+         this.client = client;
          log.info("Connected to broker: " + broker);
          StringBuilder topicList = new StringBuilder("Topics - \n");
          for (String topic : topicAndPrefixPairs.keySet()) {
@@ -74,9 +78,7 @@ public class TheSubscriberMQTT extends PropertyChangeSupport implements Runnable
          }
          firePropertyChange(MQTT_CONNECTED_LABEL, null, "MQTT Connected: " + topicList);
          // keep the thread alive and idle while waiting for new data
-         while (running) {
-            Thread.sleep(1000);
-         }
+         stopped.await();
       } catch (MqttException e) {
          String mqttErrorPrefixWithDelim = MQTT_PREFIX + PREFIX_DELIMITER;
          firePropertyChange(REPORT_ERROR_LABEL, null, mqttErrorPrefixWithDelim +
@@ -84,6 +86,11 @@ public class TheSubscriberMQTT extends PropertyChangeSupport implements Runnable
          log.warn("Unable to connect to broker --" + e.getMessage());
          Thread.currentThread().interrupt();
       } catch (InterruptedException e) {
+         if (stopped.getCount() == 0) {
+            // interrupted while shutting down on request
+            Thread.currentThread().interrupt();
+            return;
+         }
          String mqttErrorPrefixWithDelim = MQTT_PREFIX + PREFIX_DELIMITER;
          firePropertyChange(REPORT_ERROR_LABEL, null, mqttErrorPrefixWithDelim +
                e.getMessage());
@@ -99,7 +106,12 @@ public class TheSubscriberMQTT extends PropertyChangeSupport implements Runnable
 
    @Override
    public void messageArrived(String s, MqttMessage mqttMessage) {
-      firePropertyChange(CLIENT_PROPERTY_LABEL, null, topicAndPrefixPairs.get(s) +
+      String prefix = topicAndPrefixPairs.get(s);
+      if (prefix == null) {
+         // still in flight when the topic was unsubscribed
+         return;
+      }
+      firePropertyChange(CLIENT_PROPERTY_LABEL, null, prefix +
             PREFIX_DELIMITER + mqttMessage);
       log.debug("Message Arrived. Topic: " + s +
             " Message: " + new String(mqttMessage.getPayload()));
@@ -110,7 +122,45 @@ public class TheSubscriberMQTT extends PropertyChangeSupport implements Runnable
 
    }
 
+   /**
+    * Subscribes to another topic; its messages are forwarded with the prefix.
+    * Before the connection exists the topic is subscribed once connected.
+    *
+    * @param topic  the topic
+    * @param prefix prefix added to its messages
+    */
+   public void subscribe(String topic, String prefix) {
+      topicAndPrefixPairs.put(topic, prefix);
+      MqttClient connected = client;
+      if (connected != null && connected.isConnected()) {
+         try {
+            connected.subscribe(topic);
+            log.info("Subscribed to topic: " + topic);
+         } catch (MqttException e) {
+            log.warn("Unable to subscribe to " + topic + " --" + e.getMessage());
+         }
+      }
+   }
+
+   /**
+    * Stops forwarding the messages of a topic.
+    *
+    * @param topic the topic
+    */
+   public void unsubscribe(String topic) {
+      topicAndPrefixPairs.remove(topic);
+      MqttClient connected = client;
+      if (connected != null && connected.isConnected()) {
+         try {
+            connected.unsubscribe(topic);
+            log.info("Unsubscribed from topic: " + topic);
+         } catch (MqttException e) {
+            log.warn("Unable to unsubscribe from " + topic + " --" + e.getMessage());
+         }
+      }
+   }
+
    public void stopSubscriber() {
-      running = false;
+      stopped.countDown();
    }
 }